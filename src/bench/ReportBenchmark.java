@@ -0,0 +1,391 @@
+package bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+import service.ReportManager;
+
+/**
+ * Benchmarks de ReportManager: carga, consultas, exportacion e ingreso de reportes.
+ *
+ * Cada benchmark corre sobre un dataset sintetico (mitad hardware, mitad software,
+ * fechas al azar en 5 años, 1000 equipos) creado en una carpeta temporal, para no tocar data/.
+ * Igual que JMH hace iteraciones de calentamiento y de medicion de duracion fija,
+ * y reporta el tiempo promedio por operacion con su error (intervalo del 99.9%).
+ * Los resultados se escriben en JSON con la misma forma que el -rf json de JMH,
+ * para compararlos entre versiones.
+ *
+ * Uso:
+ * <pre>
+ * java -Xmx8g -cp out bench.ReportBenchmark [opciones]
+ *   --sizes 10000,1000000,10000000   tamaños de dataset (por defecto 10000,1000000)
+ *   --storage heap,mapped            modos de almacenamiento: memory, heap, mapped, columnar
+ *                                    o partitioned (por defecto heap,mapped)
+ *   --warmup 3 --iterations 5        iteraciones de calentamiento y de medicion
+ *   --time 1000                      duracion de cada iteracion en ms
+ *   --only queryBySeverity,load      solo los benchmarks indicados
+ *   --out bench-results.json         archivo de resultados
+ *   --query-cache 256                entradas de la cache de consultas (por defecto 0: sin cache,
+ *                                    para medir el indice y no la cache)
+ * </pre>
+ */
+public class ReportBenchmark {
+    private static final String[] BENCHMARKS = {
+        "load", "getDateRange", "queryByEquipmentId", "queryBySeverity",
+        "queryByDateFrom", "generateReportFile", "addReport"
+    };
+    private static final int EQUIPMENT_COUNT = 1000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int DAYS = 5 * 365;
+    private static final String[] COMPONENTS = {"Disk", "Motherboard", "RAM", "CPU", "PSU", "GPU"};
+    private static final String[] SYSTEMS = {"Windows 10", "Windows 11", "Ubuntu 22.04", "macOS 14"};
+    private static final String[] SOFTWARE = {"Office", "Chrome", "SAP", "Teams", "Antivirus"};
+    // Nivel de confianza del error, como JMH
+    private static final double Z_999 = 3.29;
+
+    private final Options options;
+    private final List<Result> results = new ArrayList<>();
+    // Se acumulan los resultados para que el JIT no elimine el trabajo medido
+    private long sink;
+
+    private ReportBenchmark(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException iae) {
+            System.out.println("Error: " + iae.getMessage());
+            return;
+        }
+        System.setProperty("reports.queryCache.entries", Integer.toString(options.queryCache));
+        ReportBenchmark benchmark = new ReportBenchmark(options);
+        benchmark.runAll();
+        benchmark.writeJson(options.out);
+        System.out.println("Resultados en " + options.out.toAbsolutePath());
+    }
+
+    private void runAll() throws IOException {
+        for (int size : options.sizes) {
+            for (ReportManager.StorageMode mode : options.storage) {
+                Path folder = Files.createTempDirectory("report-bench-");
+                try {
+                    System.out.println("# Dataset de " + size + " reportes, modo " + mode);
+                    if (mode != ReportManager.StorageMode.MEMORY) {
+                        createDataset(folder, size);
+                    }
+                    runDataset(folder, size, mode);
+                } finally {
+                    deleteRecursively(folder);
+                }
+            }
+        }
+    }
+
+    private void runDataset(Path folder, int size, ReportManager.StorageMode mode) throws IOException {
+        Random random = new Random(7);
+        // En modo MEMORY no hay nada que cargar de disco: el dataset se agrega en memoria
+        boolean inMemory = mode == ReportManager.StorageMode.MEMORY;
+        if (selected("load") && !inMemory) {
+            measure("load", size, mode, () -> {
+                ReportManager m = new ReportManager(folder, mode);
+                sink += m.countBySeverity(Severity.HIGH);
+                m.close();
+            });
+        }
+        ReportManager manager = new ReportManager(folder, mode);
+        if (inMemory) {
+            fillDataset(manager, size);
+        }
+        try {
+            if (selected("getDateRange")) {
+                measure("getDateRange", size, mode, () -> sink += manager.getDateRange()[1].toEpochDay());
+            }
+            if (selected("queryByEquipmentId")) {
+                measure("queryByEquipmentId", size, mode,
+                        () -> sink += manager.queryByEquipmentId(equipmentId(random.nextInt(EQUIPMENT_COUNT))).size());
+            }
+            if (selected("queryBySeverity")) {
+                Severity[] severities = Severity.values();
+                measure("queryBySeverity", size, mode,
+                        () -> sink += manager.queryBySeverity(severities[random.nextInt(severities.length)]).size());
+            }
+            if (selected("queryByDateFrom")) {
+                measure("queryByDateFrom", size, mode,
+                        () -> sink += manager.queryByDateFrom(FIRST_DAY.plusDays(random.nextInt(DAYS))).size());
+            }
+            if (selected("generateReportFile")) {
+                Path reports = folder.resolve("reports");
+                measure("generateReportFile", size, mode, () -> {
+                    manager.generateReportFile(random.nextBoolean() ? "Hardware" : "Software");
+                    deleteRecursively(reports);
+                });
+            }
+            if (selected("addReport")) {
+                // Va al final porque agranda el dataset
+                Random data = new Random(11);
+                measure("addReport", size, mode, () -> manager.addReport(randomReport(data)));
+            }
+        } finally {
+            manager.close();
+        }
+    }
+
+    private boolean selected(String name) {
+        return options.only.isEmpty() || options.only.contains(name);
+    }
+
+    private interface Op {
+        void run() throws IOException;
+    }
+
+    /**
+     * Corre el benchmark: iteraciones de calentamiento y despues las de medicion.
+     * Cada iteracion repite la operacion hasta cumplir su duracion (al menos una vez).
+     */
+    private void measure(String name, int size, ReportManager.StorageMode mode, Op op) throws IOException {
+        PrintStream console = System.out;
+        double[] scores = new double[options.iterations];
+        for (int i = 0; i < options.warmup + options.iterations; i++) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long deadline = start + options.iterationMillis * 1_000_000L;
+            long now;
+            // Se silencian los mensajes de la operacion (por ejemplo "Reporte generado en")
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                do {
+                    op.run();
+                    ops++;
+                    now = System.nanoTime();
+                } while (now < deadline);
+            } finally {
+                System.setOut(console);
+            }
+            if (i >= options.warmup) {
+                scores[i - options.warmup] = (now - start) / 1000.0 / ops;
+            }
+        }
+        Result result = new Result(name, size, mode, scores);
+        results.add(result);
+        System.out.printf(Locale.ROOT, "%-20s %10d %-7s %14.3f +- %10.3f us/op%n",
+                name, size, mode, result.score(), result.error());
+    }
+
+    // Dataset
+
+    private static void createDataset(Path folder, int size) throws IOException {
+        ReportManager manager = new ReportManager(folder, ReportManager.StorageMode.MAPPED);
+        fillDataset(manager, size);
+        manager.close();
+        // Al abrir de nuevo se compacta todo el journal en un solo snapshot
+        new ReportManager(folder, ReportManager.StorageMode.MAPPED).close();
+    }
+
+    private static void fillDataset(ReportManager manager, int size) throws IOException {
+        Random random = new Random(42);
+        List<Report> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < size; i++) {
+            batch.add(randomReport(random));
+            if (batch.size() == 10_000) {
+                manager.addReports(batch);
+                batch.clear();
+            }
+        }
+        manager.addReports(batch);
+    }
+
+    private static Report randomReport(Random random) {
+        String equipmentId = equipmentId(random.nextInt(EQUIPMENT_COUNT));
+        Severity severity = Severity.values()[random.nextInt(3)];
+        LocalDate date = FIRST_DAY.plusDays(random.nextInt(DAYS));
+        if (random.nextBoolean()) {
+            return new HardwareReport(equipmentId, "Falla de hardware " + random.nextInt(100), severity, date,
+                    COMPONENTS[random.nextInt(COMPONENTS.length)], 1 + random.nextInt(1_000_000), random.nextBoolean());
+        }
+        return new SoftwareReport(equipmentId, "Error de software " + random.nextInt(100), severity, date,
+                SYSTEMS[random.nextInt(SYSTEMS.length)], SOFTWARE[random.nextInt(SOFTWARE.length)],
+                random.nextInt(10) + "." + random.nextInt(10) + "." + random.nextInt(100));
+    }
+
+    private static String equipmentId(int n) {
+        return "EQ" + n;
+    }
+
+    private static void deleteRecursively(Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    // Resultados
+
+    private void writeJson(Path out) throws IOException {
+        String when = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        try (Writer w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                StringBuilder raw = new StringBuilder();
+                for (double s : r.scores) {
+                    raw.append(raw.length() == 0 ? "" : ", ").append(format(s));
+                }
+                w.write("  {\n");
+                w.write("    \"benchmark\": \"service.ReportManager." + r.name + "\",\n");
+                w.write("    \"mode\": \"avgt\",\n");
+                w.write("    \"date\": \"" + when + "\",\n");
+                w.write("    \"warmupIterations\": " + options.warmup + ",\n");
+                w.write("    \"measurementIterations\": " + options.iterations + ",\n");
+                w.write("    \"measurementTime\": \"" + options.iterationMillis + " ms\",\n");
+                w.write("    \"params\": {\"size\": \"" + r.size + "\", \"storage\": \"" + r.mode + "\"},\n");
+                w.write("    \"primaryMetric\": {\n");
+                w.write("      \"score\": " + format(r.score()) + ",\n");
+                w.write("      \"scoreError\": " + format(r.error()) + ",\n");
+                w.write("      \"scoreUnit\": \"us/op\",\n");
+                w.write("      \"rawData\": [[" + raw + "]]\n");
+                w.write("    }\n");
+                w.write(i == results.size() - 1 ? "  }\n" : "  },\n");
+            }
+            w.write("]\n");
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static final class Result {
+        final String name;
+        final int size;
+        final ReportManager.StorageMode mode;
+        final double[] scores;
+
+        Result(String name, int size, ReportManager.StorageMode mode, double[] scores) {
+            this.name = name;
+            this.size = size;
+            this.mode = mode;
+            this.scores = scores;
+        }
+
+        double score() {
+            double sum = 0;
+            for (double s : scores) {
+                sum += s;
+            }
+            return sum / scores.length;
+        }
+
+        /**
+         * Mitad del intervalo de confianza del promedio (0 si hay una sola iteracion).
+         */
+        double error() {
+            if (scores.length < 2) {
+                return 0;
+            }
+            double mean = score();
+            double squares = 0;
+            for (double s : scores) {
+                squares += (s - mean) * (s - mean);
+            }
+            return Z_999 * Math.sqrt(squares / (scores.length - 1)) / Math.sqrt(scores.length);
+        }
+    }
+
+    private static final class Options {
+        List<Integer> sizes = List.of(10_000, 1_000_000);
+        List<ReportManager.StorageMode> storage = List.of(ReportManager.StorageMode.HEAP, ReportManager.StorageMode.MAPPED);
+        int warmup = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        Set<String> only = new LinkedHashSet<>();
+        Path out = Paths.get("bench-results.json");
+        int queryCache = 0;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Falta el valor de " + name);
+                }
+                String value = args[++i];
+                try {
+                    switch (name) {
+                        case "--sizes":
+                            o.sizes = new ArrayList<>();
+                            for (String s : value.split(",")) {
+                                o.sizes.add(Integer.parseInt(s.trim().replace("_", "")));
+                            }
+                            break;
+                        case "--storage":
+                            o.storage = new ArrayList<>();
+                            for (String s : value.split(",")) {
+                                o.storage.add(ReportManager.StorageMode.valueOf(s.trim().toUpperCase(Locale.ROOT)));
+                            }
+                            break;
+                        case "--warmup":
+                            o.warmup = Integer.parseInt(value);
+                            break;
+                        case "--iterations":
+                            o.iterations = Integer.parseInt(value);
+                            break;
+                        case "--time":
+                            o.iterationMillis = Long.parseLong(value);
+                            break;
+                        case "--only":
+                            for (String s : value.split(",")) {
+                                o.only.add(s.trim());
+                            }
+                            break;
+                        case "--out":
+                            o.out = Paths.get(value);
+                            break;
+                        case "--query-cache":
+                            o.queryCache = Integer.parseInt(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Opcion desconocida: " + name);
+                    }
+                } catch (NumberFormatException nfe) {
+                    throw new IllegalArgumentException("Valor invalido para " + name + ": " + value);
+                }
+            }
+            if (o.warmup < 0 || o.iterations < 1 || o.iterationMillis < 1) {
+                throw new IllegalArgumentException("Se necesita al menos una iteracion de medicion");
+            }
+            for (String s : o.only) {
+                if (!List.of(BENCHMARKS).contains(s)) {
+                    throw new IllegalArgumentException("Benchmark desconocido: " + s);
+                }
+            }
+            return o;
+        }
+    }
+}
@@ -37,7 +37,7 @@ public class HardwareReport extends Report {
             boolean needsReplacement
     ) {
         super(equipmentId, description, severity, reportDate);
-        this.componentType = componentType;
+        this.componentType = SharedStrings.intern(componentType);
         this.serialNumber = serialNumber;
         this.needsReplacement = needsReplacement;
     }
@@ -54,6 +54,15 @@ public class HardwareReport extends Report {
         return needsReplacement;
     }
 
+    /**
+     * Al leer un reporte serializado (archivo viejo) se pasa por el constructor
+     * para que los textos repetidos queden compartidos (ver SharedStrings).
+     */
+    private Object readResolve() {
+        return new HardwareReport(equipmentId, description, severity, reportDate,
+                componentType, serialNumber, needsReplacement);
+    }
+
     @Override
     public String toString() {
         // Todos los factores deben ser devueltos separados por guiones
@@ -28,7 +28,8 @@ public abstract class Report implements Serializable {
      * @param reportDate   Fecha del reporte
      */
     public Report(String equipmentId, String description, Severity severity, LocalDate reportDate) {
-        this.equipmentId = equipmentId;
+        // El ID se repite en muchos reportes: se comparte una sola instancia
+        this.equipmentId = SharedStrings.intern(equipmentId);
         this.description = description;
         this.severity = severity;
         this.reportDate = reportDate;
@@ -38,6 +39,10 @@ public abstract class Report implements Serializable {
         return equipmentId;
     }
 
+    public String getDescription() {
+        return description;
+    }
+
     public Severity getSeverity() {
         return severity;
     }
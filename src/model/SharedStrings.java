@@ -0,0 +1,48 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool de textos compartidos para los campos que se repiten mucho entre reportes
+ * (equipmentId, componentType, sistema operativo, nombre y version del software).
+ * Los constructores de los reportes pasan esos campos por aqui, asi que da igual si
+ * el reporte viene de la consola, del importador, del snapshot o del journal:
+ * todos los reportes con el mismo texto apuntan a la misma instancia de String.
+ *
+ * Se usa un mapa propio en vez de String.intern() para no llenar la tabla de
+ * textos de la JVM. Si el pool llega a MAX_ENTRIES deja de crecer y los textos
+ * nuevos se usan tal cual, para que una columna con valores unicos no lo agrande sin limite.
+ */
+public final class SharedStrings {
+    private static final int MAX_ENTRIES = 1 << 20;
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private SharedStrings() {
+    }
+
+    /**
+     * @param value texto a compartir (puede ser null)
+     * @return la instancia compartida con el mismo contenido
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = POOL.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (POOL.size() >= MAX_ENTRIES) {
+            return value;
+        }
+        shared = POOL.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * @return cantidad de textos distintos en el pool
+     */
+    public static int size() {
+        return POOL.size();
+    }
+}
@@ -15,6 +15,8 @@ public class SoftwareReport extends Report {
     private String softwareName;
     // Version en el formato A.B.C
     private String version;
+    // La misma version empaquetada para compararla (ver SoftwareVersion); se recalcula al leer
+    private transient long packedVersion;
 
     /**
      * Se crea un reporte de software.
@@ -37,9 +39,10 @@ public class SoftwareReport extends Report {
             String version
     ) {
         super(equipmentId, description, severity, reportDate);
-        this.operatingSystem = operatingSystem;
-        this.softwareName = softwareName;
-        this.version = version;
+        this.operatingSystem = SharedStrings.intern(operatingSystem);
+        this.softwareName = SharedStrings.intern(softwareName);
+        this.version = SharedStrings.intern(version);
+        this.packedVersion = SoftwareVersion.parse(version);
     }
 
     public String getOperatingSystem() {
@@ -54,6 +57,22 @@ public class SoftwareReport extends Report {
         return version;
     }
 
+    /**
+     * @return la version empaquetada para comparar, o SoftwareVersion.INVALID si no es A.B.C
+     */
+    public long getPackedVersion() {
+        return packedVersion;
+    }
+
+    /**
+     * Al leer un reporte serializado (archivo viejo) se pasa por el constructor
+     * para que los textos repetidos queden compartidos (ver SharedStrings).
+     */
+    private Object readResolve() {
+        return new SoftwareReport(equipmentId, description, severity, reportDate,
+                operatingSystem, softwareName, version);
+    }
+
     @Override
     public String toString() {
         // Todos los factores separados por guiones
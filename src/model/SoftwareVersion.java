@@ -0,0 +1,129 @@
+package model;
+
+/**
+ * Versiones de software A.B.C empaquetadas en un long que se compara como la version:
+ * A, B y C ocupan 21 bits cada una, de la mas importante a la menos importante,
+ * asi que 2.10.0 queda despues de 2.9.3. Se leen caracter por caracter, sin regex.
+ */
+public final class SoftwareVersion {
+    // Valor de parse() cuando el texto no es una version que entre en el long
+    public static final long INVALID = -1;
+
+    private static final int PART_BITS = 21;
+    private static final long PART_MASK = (1L << PART_BITS) - 1;
+
+    private SoftwareVersion() {
+    }
+
+    /**
+     * @param text version, puede tener espacios alrededor
+     * @return true si es A.B.C con digitos (de cualquier largo)
+     */
+    public static boolean isValid(CharSequence text) {
+        if (text == null) {
+            return false;
+        }
+        int start = skipSpaces(text, 0);
+        int end = trimEnd(text, start);
+        int dots = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++dots > 2) {
+                    return false;
+                }
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                digits++;
+            } else {
+                return false;
+            }
+        }
+        return dots == 2 && digits > 0;
+    }
+
+    /**
+     * @param text version A.B.C, puede tener espacios alrededor
+     * @return la version empaquetada, o INVALID si no es A.B.C o alguna parte
+     *         es mayor que 2097151
+     */
+    public static long parse(CharSequence text) {
+        if (text == null) {
+            return INVALID;
+        }
+        int start = skipSpaces(text, 0);
+        int end = trimEnd(text, start);
+        long packed = 0;
+        long part = 0;
+        int parts = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || parts == 2) {
+                    return INVALID;
+                }
+                packed = (packed << PART_BITS) | part;
+                parts++;
+                part = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                if (part > PART_MASK) {
+                    return INVALID;
+                }
+                digits++;
+            } else {
+                return INVALID;
+            }
+        }
+        if (parts != 2 || digits == 0) {
+            return INVALID;
+        }
+        return (packed << PART_BITS) | part;
+    }
+
+    /**
+     * @param packed version devuelta por parse()
+     * @return el texto A.B.C (sin los ceros a la izquierda que pudiera tener el original)
+     */
+    public static String format(long packed) {
+        return (packed >>> (2 * PART_BITS)) + "."
+                + ((packed >>> PART_BITS) & PART_MASK) + "."
+                + (packed & PART_MASK);
+    }
+
+    /**
+     * Largo del texto de format(packed), sin armarlo. Un texto que parse() acepta y tiene
+     * este largo es igual a format(packed): no tiene espacios ni ceros a la izquierda.
+     */
+    public static int formattedLength(long packed) {
+        return digits(packed >>> (2 * PART_BITS)) + digits((packed >>> PART_BITS) & PART_MASK)
+                + digits(packed & PART_MASK) + 2;
+    }
+
+    private static int digits(long part) {
+        int n = 1;
+        while (part >= 10) {
+            part /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    private static int skipSpaces(CharSequence text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(CharSequence text, int start) {
+        int end = text.length();
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,302 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+import model.SoftwareVersion;
+
+/**
+ * Reportes guardados por columnas en vez de un objeto Report por reporte:
+ * - fecha: int[] con el epoch-day
+ * - severidad: byte[] con el ordinal
+ * - tipo y necesita reemplazo: un bit por reporte
+ * - equipmentId: int[] con el id en el diccionario de textos
+ * - detail: componentType (hardware) o sistema operativo (software), id en el diccionario
+ * - number: numero de serie (hardware) o id del nombre del software (software)
+ * - version: A.B.C empaquetada como en SoftwareVersion (ver packVersion)
+ * - descripcion: bytes UTF-8 seguidos, en paginas de PAGE_SIZE bytes, con la posicion
+ *   final (long) de cada una y un bit para las descripciones null
+ * Los textos repetidos quedan una sola vez en el diccionario. Cada Report se arma
+ * recien cuando alguien lo pide con get(i).
+ *
+ * Un solo hilo agrega y los lectores usan columns(), una foto de los arreglos
+ * actuales. El escritor solo escribe despues del ultimo tamaño publicado
+ * y al crecer copia el arreglo, asi que la foto nunca cambia para los lectores.
+ */
+final class ColumnarReportStore {
+    private static final Severity[] SEVERITIES = Severity.values();
+    // Paginas de 1 MB para las descripciones: en total pueden pasar los 2 GB de un byte[]
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MIN_PAGE = 256;
+
+    private final StringDictionary dictionary = new StringDictionary();
+    private int[] days = new int[16];
+    private byte[] severities = new byte[16];
+    private long[] hardwareBits = new long[1];
+    private long[] replacementBits = new long[1];
+    private long[] nullDescriptionBits = new long[1];
+    private int[] equipment = new int[16];
+    private int[] detail = new int[16];
+    private int[] number = new int[16];
+    private long[] versions = new long[16];
+    // Posicion final de cada descripcion, contando todas las paginas seguidas
+    private long[] descriptionEnds = new long[16];
+    // Todas las paginas tienen PAGE_SIZE bytes salvo la ultima, que crece copiandose
+    private byte[][] descriptionPages = {new byte[MIN_PAGE]};
+    private int count;
+
+    /**
+     * Agrega un reporte al final. No queda visible hasta que se pide una foto nueva con columns().
+     *
+     * @return posicion del reporte dentro del store
+     */
+    int append(Report r) {
+        if (count == days.length) {
+            grow();
+        }
+        int i = count;
+        // Las fechas aceptadas (InputParser.MIN_DATE a MAX_DATE) entran en un int
+        days[i] = Math.toIntExact(r.getReportDate().toEpochDay());
+        severities[i] = (byte) r.getSeverity().ordinal();
+        equipment[i] = dictionary.idOf(r.getEquipmentId());
+        appendDescription(i, r.getDescription());
+        if (r instanceof HardwareReport) {
+            HardwareReport hw = (HardwareReport) r;
+            setBit(hardwareBits, i);
+            if (hw.isNeedsReplacement()) {
+                setBit(replacementBits, i);
+            }
+            detail[i] = dictionary.idOf(hw.getComponentType());
+            number[i] = hw.getSerialNumber();
+        } else {
+            SoftwareReport sw = (SoftwareReport) r;
+            detail[i] = dictionary.idOf(sw.getOperatingSystem());
+            number[i] = dictionary.idOf(sw.getSoftwareName());
+            versions[i] = packVersion(sw);
+        }
+        count++;
+        return i;
+    }
+
+    /**
+     * @return foto inmutable de las columnas con todos los reportes agregados hasta ahora
+     */
+    Columns columns() {
+        return new Columns(this);
+    }
+
+    /**
+     * Recorta los arreglos al tamaño justo, por ejemplo despues de la carga inicial.
+     * Las fotos anteriores siguen usando los arreglos viejos.
+     */
+    void trimToSize() {
+        resize(Math.max(16, count));
+        long used = count == 0 ? 0 : descriptionEnds[count - 1];
+        int last = descriptionPages.length - 1;
+        int lastUsed = (int) Math.min(PAGE_SIZE, Math.max(MIN_PAGE, used - ((long) last << PAGE_BITS)));
+        if (lastUsed < descriptionPages[last].length) {
+            byte[][] pages = descriptionPages.clone();
+            pages[last] = Arrays.copyOf(pages[last], lastUsed);
+            descriptionPages = pages;
+        }
+    }
+
+    private void grow() {
+        resize(count + (count >> 1) + 16);
+    }
+
+    private void resize(int capacity) {
+        days = Arrays.copyOf(days, capacity);
+        severities = Arrays.copyOf(severities, capacity);
+        hardwareBits = Arrays.copyOf(hardwareBits, (capacity + 63) >>> 6);
+        replacementBits = Arrays.copyOf(replacementBits, hardwareBits.length);
+        nullDescriptionBits = Arrays.copyOf(nullDescriptionBits, hardwareBits.length);
+        equipment = Arrays.copyOf(equipment, capacity);
+        detail = Arrays.copyOf(detail, capacity);
+        number = Arrays.copyOf(number, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        descriptionEnds = Arrays.copyOf(descriptionEnds, capacity);
+    }
+
+    private void appendDescription(int i, String description) {
+        long start = i == 0 ? 0 : descriptionEnds[i - 1];
+        if (description == null) {
+            descriptionEnds[i] = start;
+            setBit(nullDescriptionBits, i);
+            return;
+        }
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        ensureDescriptionCapacity(start + bytes.length);
+        long pos = start;
+        int done = 0;
+        while (done < bytes.length) {
+            int offset = (int) (pos & (PAGE_SIZE - 1));
+            int n = Math.min(bytes.length - done, PAGE_SIZE - offset);
+            System.arraycopy(bytes, done, descriptionPages[(int) (pos >>> PAGE_BITS)], offset, n);
+            done += n;
+            pos += n;
+        }
+        descriptionEnds[i] = start + bytes.length;
+    }
+
+    /**
+     * Agranda la ultima pagina o agrega paginas hasta que entren end bytes. Siempre arma
+     * un arreglo de paginas nuevo: las fotos anteriores siguen con el suyo, y una pagina
+     * que se copia para crecer no cambia debajo de ellas.
+     */
+    private void ensureDescriptionCapacity(long end) {
+        int last = descriptionPages.length - 1;
+        if (end <= ((long) last << PAGE_BITS) + descriptionPages[last].length) {
+            return;
+        }
+        int needed = (int) ((end - 1) >>> PAGE_BITS) + 1;
+        byte[][] pages = Arrays.copyOf(descriptionPages, needed);
+        for (int p = last; p < needed; p++) {
+            int length = pages[p] == null ? 0 : pages[p].length;
+            int size = PAGE_SIZE;
+            if (p == needed - 1) {
+                int used = (int) (end - ((long) p << PAGE_BITS));
+                size = Math.min(PAGE_SIZE, Math.max(MIN_PAGE, Math.max(used, length + (length >> 1))));
+            }
+            if (size != length) {
+                pages[p] = pages[p] == null ? new byte[size] : Arrays.copyOf(pages[p], size);
+            }
+        }
+        descriptionPages = pages;
+    }
+
+    private static void setBit(long[] words, int i) {
+        words[i >>> 6] |= 1L << i;
+    }
+
+    private static boolean getBit(long[] words, int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Usa la version empaquetada del reporte (SoftwareVersion) si al formatearla vuelve
+     * el mismo texto, es decir sin ceros a la izquierda ni espacios. Si no, guarda el texto
+     * en el diccionario y devuelve el complemento de su id (un numero negativo).
+     */
+    private long packVersion(SoftwareReport sw) {
+        long packed = sw.getPackedVersion();
+        String version = sw.getVersion();
+        if (packed != SoftwareVersion.INVALID && SoftwareVersion.formattedLength(packed) == version.length()) {
+            return packed;
+        }
+        return ~dictionary.idOf(version);
+    }
+
+    /**
+     * Foto de las columnas. Los arreglos se comparten con el store, pero las posiciones
+     * menores que size() ya no cambian.
+     */
+    static final class Columns {
+        private final String[] dictionary;
+        private final int[] days;
+        private final byte[] severities;
+        private final long[] hardwareBits;
+        private final long[] replacementBits;
+        private final long[] nullDescriptionBits;
+        private final int[] equipment;
+        private final int[] detail;
+        private final int[] number;
+        private final long[] versions;
+        private final long[] descriptionEnds;
+        private final byte[][] descriptionPages;
+        private final int size;
+
+        private Columns(ColumnarReportStore store) {
+            this.dictionary = store.dictionary.values();
+            this.days = store.days;
+            this.severities = store.severities;
+            this.hardwareBits = store.hardwareBits;
+            this.replacementBits = store.replacementBits;
+            this.nullDescriptionBits = store.nullDescriptionBits;
+            this.equipment = store.equipment;
+            this.detail = store.detail;
+            this.number = store.number;
+            this.versions = store.versions;
+            this.descriptionEnds = store.descriptionEnds;
+            this.descriptionPages = store.descriptionPages;
+            this.size = store.count;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Arma el Report de la posicion i.
+         */
+        Report get(int i) {
+            LocalDate date = LocalDate.ofEpochDay(days[i]);
+            String description = descriptionAt(i);
+            if (isHardwareAt(i)) {
+                return new HardwareReport(equipmentIdAt(i), description, severityAt(i), date,
+                        dictionary[detail[i]], number[i], getBit(replacementBits, i));
+            }
+            return new SoftwareReport(equipmentIdAt(i), description, severityAt(i), date,
+                    dictionary[detail[i]], dictionary[number[i]], versionAt(i));
+        }
+
+        String equipmentIdAt(int i) {
+            return dictionary[equipment[i]];
+        }
+
+        Severity severityAt(int i) {
+            return SEVERITIES[severities[i]];
+        }
+
+        long epochDayAt(int i) {
+            return days[i];
+        }
+
+        boolean isHardwareAt(int i) {
+            return getBit(hardwareBits, i);
+        }
+
+        String componentTypeAt(int i) {
+            return dictionary[detail[i]];
+        }
+
+        boolean needsReplacementAt(int i) {
+            return getBit(replacementBits, i);
+        }
+
+        private String descriptionAt(int i) {
+            if (getBit(nullDescriptionBits, i)) {
+                return null;
+            }
+            long start = i == 0 ? 0 : descriptionEnds[i - 1];
+            int length = (int) (descriptionEnds[i] - start);
+            byte[] page = descriptionPages[(int) (start >>> PAGE_BITS)];
+            int offset = (int) (start & (PAGE_SIZE - 1));
+            if (offset + length <= PAGE_SIZE) {
+                return new String(page, offset, length, StandardCharsets.UTF_8);
+            }
+            // Cruza el final de la pagina: se juntan los pedazos
+            byte[] bytes = new byte[length];
+            long pos = start;
+            int done = 0;
+            while (done < length) {
+                offset = (int) (pos & (PAGE_SIZE - 1));
+                int n = Math.min(length - done, PAGE_SIZE - offset);
+                System.arraycopy(descriptionPages[(int) (pos >>> PAGE_BITS)], offset, bytes, done, n);
+                done += n;
+                pos += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private String versionAt(int i) {
+            long packed = versions[i];
+            return packed < 0 ? dictionary[(int) ~packed] : SoftwareVersion.format(packed);
+        }
+    }
+}
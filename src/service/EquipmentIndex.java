@@ -0,0 +1,52 @@
+package service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice secundario de equipmentId a las posiciones de sus reportes, ordenadas por fecha.
+ * La clave se guarda en minusculas para que la busqueda no distinga mayusculas,
+ * igual que el equalsIgnoreCase que se usaba antes.
+ */
+final class EquipmentIndex {
+    private static final PostingList.View EMPTY = new PostingList().view();
+
+    private final Map<String, PostingList> postings = new ConcurrentHashMap<>();
+
+    static String fold(String equipmentId) {
+        return equipmentId == null ? "" : equipmentId.toLowerCase(Locale.ROOT);
+    }
+
+    void add(String equipmentId, long epochDay, int row) {
+        postings.computeIfAbsent(fold(equipmentId), k -> new PostingList()).add(epochDay, row);
+    }
+
+    /**
+     * Agrega un lote de claves de un mismo equipo (ya plegado con fold) y lo publica.
+     */
+    void addAll(String foldedId, long[] keys, int n) {
+        postings.computeIfAbsent(foldedId, k -> new PostingList()).addAll(keys, n);
+    }
+
+    /**
+     * Carga masiva: agrega sin ordenar. Hay que llamar a sortAll() al terminar.
+     */
+    void append(String equipmentId, long epochDay, int row) {
+        postings.computeIfAbsent(fold(equipmentId), k -> new PostingList()).append(epochDay, row);
+    }
+
+    void sortAll() {
+        for (PostingList list : postings.values()) {
+            list.sort();
+        }
+    }
+
+    /**
+     * @return las posiciones del equipo ordenadas por fecha (vacia si no hay)
+     */
+    PostingList.View rows(String equipmentId) {
+        PostingList list = postings.get(fold(equipmentId));
+        return list == null ? EMPTY : list.view();
+    }
+}
@@ -0,0 +1,259 @@
+package service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import model.Report;
+
+/**
+ * Escribe los reportes en el journal segun el nivel de durabilidad:
+ * - PER_WRITE: cada reporte se escribe y se baja a disco (fsync) en el hilo que lo agrega
+ * - BATCHED: los reportes se juntan durante WINDOW_NANOS o hasta MAX_BATCH y un hilo
+ *   de fondo los escribe con una sola escritura y un solo fsync (group commit)
+ * - NONE: igual que BATCHED pero sin fsync; el futuro se completa al encolar
+ *
+ * En BATCHED y NONE todas las escrituras pasan por el hilo de fondo, asi el journal
+ * recibe las secuencias en orden. Los lotes de appendAll siempre se bajan a disco.
+ */
+final class GroupCommit {
+    // Tiempo maximo que un reporte espera a que se junte un lote
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // Reportes que disparan la escritura sin esperar la ventana
+    private static final int MAX_BATCH = 4096;
+
+    private final ReportJournal journal;
+    private final ReportManager.Durability durability;
+    // Protege pending, queued, urgent, writing y closed
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private int queued;
+    // True si hay un lote de appendAll esperando: se escribe sin esperar la ventana
+    private boolean urgent;
+    private boolean writing;
+    private boolean closed;
+    private final Thread flusher;
+
+    /**
+     * @param journal    journal donde se escribe; las escrituras se hacen con su lock tomado
+     * @param durability nivel de durabilidad
+     */
+    GroupCommit(ReportJournal journal, ReportManager.Durability durability) {
+        this.journal = journal;
+        this.durability = durability;
+        if (durability == ReportManager.Durability.PER_WRITE) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::run, "report-journal-writer");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Guarda un reporte.
+     *
+     * @return se completa cuando el reporte quedo guardado con la durabilidad configurada,
+     *         o con la IOException si fallo la escritura
+     */
+    CompletableFuture<Void> append(long seq, Report r) {
+        if (flusher == null) {
+            try {
+                synchronized (journal) {
+                    journal.append(seq, r);
+                    journal.force();
+                }
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        boolean durable = durability == ReportManager.Durability.BATCHED;
+        CompletableFuture<Void> done = enqueue(new Pending(seq, List.of(r), durable));
+        return durable ? done : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Guarda un lote con un solo fsync. Con PER_WRITE lo escribe y lo baja a disco aca,
+     * como append(); si no, lo encola y vuelve sin esperar.
+     *
+     * @return se completa cuando el lote quedo en disco, o con la IOException si fallo
+     *         la escritura o el fsync
+     */
+    CompletableFuture<Void> appendAll(long firstSeq, List<? extends Report> batch) {
+        if (flusher == null) {
+            try {
+                synchronized (journal) {
+                    journal.appendAll(firstSeq, batch);
+                    journal.force();
+                }
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return enqueue(new Pending(firstSeq, new ArrayList<>(batch), true));
+    }
+
+    private CompletableFuture<Void> enqueue(Pending p) {
+        synchronized (lock) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("El journal esta cerrado"));
+            }
+            pending.add(p);
+            queued += p.reports.size();
+            boolean batch = p.reports.size() > 1;
+            urgent |= batch;
+            if (pending.size() == 1 || queued >= MAX_BATCH || batch) {
+                lock.notifyAll();
+            }
+        }
+        return p.done;
+    }
+
+    /**
+     * Espera a que se escriba todo lo encolado, por ejemplo antes de rotar el journal.
+     */
+    void drain() {
+        if (flusher == null) {
+            return;
+        }
+        synchronized (lock) {
+            // No hace falta esperar la ventana: alguien ya esta esperando
+            urgent = true;
+            lock.notifyAll();
+            boolean interrupted = false;
+            while (!pending.isEmpty() || writing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Escribe lo que queda encolado y termina el hilo de fondo.
+     */
+    void close() {
+        if (flusher == null) {
+            return;
+        }
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<Pending> batch;
+            synchronized (lock) {
+                try {
+                    while (pending.isEmpty() && !closed) {
+                        lock.wait();
+                    }
+                    // Se espera a que se junte un lote, salvo que un appendAll ya este esperando
+                    long deadline = pending.isEmpty() ? 0 : pending.get(0).enqueuedAt + WINDOW_NANOS;
+                    while (!closed && queued < MAX_BATCH && !urgent) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                    }
+                } catch (InterruptedException e) {
+                    // Solo se interrumpe al salir: se escribe lo que haya
+                }
+                if (pending.isEmpty()) {
+                    if (closed) {
+                        lock.notifyAll();
+                        return;
+                    }
+                    continue;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                queued = 0;
+                urgent = false;
+                writing = true;
+            }
+            write(batch);
+            synchronized (lock) {
+                writing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Escribe los pendientes juntando los que tienen secuencias seguidas
+     * y hace un solo fsync si alguno lo necesita.
+     */
+    private void write(List<Pending> batch) {
+        IOException error = null;
+        boolean force = false;
+        synchronized (journal) {
+            try {
+                int i = 0;
+                while (i < batch.size()) {
+                    long firstSeq = batch.get(i).firstSeq;
+                    List<Report> run = new ArrayList<>();
+                    long next = firstSeq;
+                    while (i < batch.size() && batch.get(i).firstSeq == next) {
+                        Pending p = batch.get(i++);
+                        run.addAll(p.reports);
+                        next += p.reports.size();
+                        force |= p.durable;
+                    }
+                    journal.appendAll(firstSeq, run);
+                }
+                if (force) {
+                    journal.force();
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        boolean unreported = false;
+        for (Pending p : batch) {
+            if (error == null) {
+                p.done.complete(null);
+            } else {
+                p.done.completeExceptionally(error);
+                // En NONE nadie mira el futuro: el error se informa aca
+                unreported |= !p.durable;
+            }
+        }
+        if (unreported) {
+            System.err.println("Error al guardar reportes: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Reportes con secuencias seguidas que esperan ser escritos.
+     */
+    private static final class Pending {
+        final long firstSeq;
+        final List<? extends Report> reports;
+        final boolean durable;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(long firstSeq, List<? extends Report> reports, boolean durable) {
+            this.firstSeq = firstSeq;
+            this.reports = reports;
+            this.durable = durable;
+        }
+    }
+}
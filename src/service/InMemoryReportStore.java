@@ -0,0 +1,44 @@
+package service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import model.Report;
+
+/**
+ * Store que solo guarda los reportes en memoria: arranca vacio y se pierde al salir.
+ * Sirve para pruebas, demos o procesos que cargan los datos con un import.
+ */
+final class InMemoryReportStore implements ReportStore {
+
+    @Override
+    public ReportRows load() {
+        return new ReportRows(null);
+    }
+
+    @Override
+    public boolean readsInPlace() {
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<Void> append(long seq, Report r) {
+        // No hay nada que guardar
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAll(long firstSeq, List<? extends Report> batch) {
+        // No hay nada que guardar
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void published(int added) {
+        // No hay nada que compactar
+    }
+
+    @Override
+    public void close() {
+        // No hay archivos abiertos
+    }
+}
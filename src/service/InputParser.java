@@ -0,0 +1,244 @@
+package service;
+
+import exceptions.InvalidSerialNumberException;
+import exceptions.InvalidSeverityException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import model.Severity;
+
+/**
+ * Lee severidades, fechas y numeros de serie directamente de un rango de texto
+ * (CharSequence) o de bytes ASCII/UTF-8, sin armar Strings intermedios: no hace trim()
+ * ni toUpperCase(), solo salta los espacios de los bordes y compara caracter por caracter.
+ * Los errores son los mismos que los de ReportManager, asi se puede usar en su lugar.
+ *
+ * Cada metodo recibe el texto o los bytes (uno de los dos) y el rango [start, end).
+ */
+public final class InputParser {
+    // Palabras aceptadas, en mayusculas, y la severidad de cada una
+    private static final String[] SEVERITY_WORDS = {"ALTO", "HIGH", "MEDIO", "MEDIUM", "BAJO", "LOW"};
+    private static final Severity[] SEVERITY_VALUES = {
+            Severity.HIGH, Severity.HIGH, Severity.MEDIUM, Severity.MEDIUM, Severity.LOW, Severity.LOW
+    };
+
+    private InputParser() {
+    }
+
+    // Severidad
+
+    /**
+     * @param text Alto/Medio/Bajo o High/Medium/Low, sin distinguir mayusculas
+     * @throws InvalidSeverityException si no es ninguna
+     */
+    public static Severity parseSeverity(CharSequence text) throws InvalidSeverityException {
+        return severity(text, null, 0, text == null ? 0 : text.length());
+    }
+
+    public static Severity parseSeverity(CharSequence text, int start, int end) throws InvalidSeverityException {
+        return severity(text, null, start, end);
+    }
+
+    public static Severity parseSeverity(byte[] bytes, int start, int end) throws InvalidSeverityException {
+        return severity(null, bytes, start, end);
+    }
+
+    private static Severity severity(CharSequence text, byte[] bytes, int start, int end)
+            throws InvalidSeverityException {
+        start = skipSpaces(text, bytes, start, end);
+        end = trimEnd(text, bytes, start, end);
+        for (int w = 0; w < SEVERITY_WORDS.length; w++) {
+            if (equalsUpper(text, bytes, start, end, SEVERITY_WORDS[w])) {
+                return SEVERITY_VALUES[w];
+            }
+        }
+        throw new InvalidSeverityException("Severidad invalida. Use Alto/Medio/Bajo");
+    }
+
+    private static boolean equalsUpper(CharSequence text, byte[] bytes, int start, int end, String upper) {
+        if (end - start != upper.length()) {
+            return false;
+        }
+        for (int i = 0; i < upper.length(); i++) {
+            int c = at(text, bytes, start + i);
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            if (c != upper.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Fecha
+
+    /**
+     * Fechas que se aceptan: años de cuatro cifras. Los indices usan el epochDay como int
+     * y los contadores por dia reservan lugar para todo el rango, asi que no admiten mas.
+     */
+    public static final LocalDate MIN_DATE = LocalDate.of(0, 1, 1);
+    public static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    /**
+     * @param text fecha YYYY-MM-DD
+     * @throws DateTimeParseException si no es una fecha valida, igual que LocalDate.parse,
+     *                                o si esta fuera de MIN_DATE..MAX_DATE
+     */
+    public static LocalDate parseDate(CharSequence text) {
+        return date(text, null, 0, text.length());
+    }
+
+    public static LocalDate parseDate(CharSequence text, int start, int end) {
+        return date(text, null, start, end);
+    }
+
+    public static LocalDate parseDate(byte[] bytes, int start, int end) {
+        return date(null, bytes, start, end);
+    }
+
+    /**
+     * El caso comun (cuatro digitos de año) se lee a mano. Lo demas (años con signo,
+     * fechas invalidas) pasa por LocalDate.parse para dar el mismo error que antes.
+     */
+    private static LocalDate date(CharSequence text, byte[] bytes, int start, int end) {
+        start = skipSpaces(text, bytes, start, end);
+        end = trimEnd(text, bytes, start, end);
+        if (end - start == 10 && at(text, bytes, start + 4) == '-' && at(text, bytes, start + 7) == '-') {
+            int year = digits(text, bytes, start, 4);
+            int month = digits(text, bytes, start + 5, 2);
+            int day = digits(text, bytes, start + 8, 2);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        CharSequence input = copy(text, bytes, start, end);
+        LocalDate date = LocalDate.parse(input);
+        if (!isSupportedDate(date)) {
+            throw new DateTimeParseException("Fecha fuera de rango. Use fechas entre " + MIN_DATE + " y " + MAX_DATE,
+                    input, 0);
+        }
+        return date;
+    }
+
+    /**
+     * @return true si la fecha esta entre MIN_DATE y MAX_DATE
+     */
+    public static boolean isSupportedDate(LocalDate date) {
+        return date != null && !date.isBefore(MIN_DATE) && !date.isAfter(MAX_DATE);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return el numero de count digitos desde start, o -1 si alguno no es digito
+     */
+    private static int digits(CharSequence text, byte[] bytes, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int c = at(text, bytes, i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Numero de serie
+
+    /**
+     * @param text entero positivo
+     * @throws InvalidSerialNumberException si no es entero o no es mayor que 0
+     */
+    public static int parseSerialNumber(CharSequence text) throws InvalidSerialNumberException {
+        return serialNumber(text, null, 0, text == null ? 0 : text.length());
+    }
+
+    public static int parseSerialNumber(CharSequence text, int start, int end) throws InvalidSerialNumberException {
+        return serialNumber(text, null, start, end);
+    }
+
+    public static int parseSerialNumber(byte[] bytes, int start, int end) throws InvalidSerialNumberException {
+        return serialNumber(null, bytes, start, end);
+    }
+
+    /**
+     * Acepta lo mismo que Integer.parseInt (signo opcional) y despues exige que sea positivo.
+     */
+    private static int serialNumber(CharSequence text, byte[] bytes, int start, int end)
+            throws InvalidSerialNumberException {
+        start = skipSpaces(text, bytes, start, end);
+        end = trimEnd(text, bytes, start, end);
+        boolean negative = false;
+        if (start < end && (at(text, bytes, start) == '-' || at(text, bytes, start) == '+')) {
+            negative = at(text, bytes, start) == '-';
+            start++;
+        }
+        if (start == end) {
+            throw new InvalidSerialNumberException("Numero de serie invalido. Debe ser entero.");
+        }
+        // Se acumula en negativo para que entre Integer.MIN_VALUE, como en parseInt
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int c = at(text, bytes, i);
+            if (c < '0' || c > '9' || value < (Integer.MIN_VALUE + (c - '0')) / 10) {
+                throw new InvalidSerialNumberException("Numero de serie invalido. Debe ser entero.");
+            }
+            value = value * 10 - (c - '0');
+        }
+        if (!negative && value == Integer.MIN_VALUE) {
+            throw new InvalidSerialNumberException("Numero de serie invalido. Debe ser entero.");
+        }
+        if (negative || value == 0) {
+            throw new InvalidSerialNumberException("El numero de serie debe ser entero positivo");
+        }
+        return -value;
+    }
+
+    // Rangos
+
+    private static int at(CharSequence text, byte[] bytes, int i) {
+        return text != null ? text.charAt(i) : bytes[i] & 0xFF;
+    }
+
+    private static int skipSpaces(CharSequence text, byte[] bytes, int start, int end) {
+        while (start < end && Character.isWhitespace(at(text, bytes, start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence text, byte[] bytes, int start, int end) {
+        while (end > start && Character.isWhitespace(at(text, bytes, end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Solo para el camino lento: arma el texto del rango.
+     */
+    private static CharSequence copy(CharSequence text, byte[] bytes, int start, int end) {
+        if (text != null) {
+            return text.subSequence(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append((char) (bytes[i] & 0xFF));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,554 @@
+package service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import model.Report;
+
+/**
+ * Store con los reportes en memoria (objetos Report o columnas) y guardados en disco:
+ * - Un snapshot con el formato de ReportCodec
+ * - Un journal de solo-agregado con los reportes posteriores al snapshot
+ * Cada COMPACTION_THRESHOLD reportes se escribe en segundo plano un snapshot nuevo
+ * y se borran los segmentos del journal que ya quedaron dentro de el.
+ * Las escrituras al journal pasan por GroupCommit, que aplica el nivel de durabilidad.
+ *
+ * Cada snapshot es una generacion nueva (databaseReports.N.dat) y databaseReports.current
+ * tiene el nombre de la vigente. Un snapshot nunca se reemplaza en el lugar: se escribe
+ * el siguiente, se cambia el puntero de forma atomica y recien despues se borra el anterior,
+ * salvo que siga mapeado (modo MAPPED); ese se borra en el proximo arranque.
+ * Sin puntero se usa databaseReports.dat, el archivo de las versiones anteriores.
+ * Si el puntero existe pero no se puede leer, se carga la generacion mas nueva y no se compacta.
+ *
+ * Si algo guardado no se puede leer (ver markUnreadable), no se escriben snapshots ni se
+ * borran generaciones o segmentos del journal hasta reiniciar: el snapshot nuevo tendria
+ * solo lo que se pudo cargar y reemplazaria a la unica copia completa.
+ */
+class JournaledReportStore implements ReportStore {
+    static final String DATA_FILE = "databaseReports.dat";
+    // Nombre del snapshot vigente
+    static final String CURRENT_FILE = "databaseReports.current";
+    private static final String GENERATION_PREFIX = "databaseReports.";
+    private static final String GENERATION_SUFFIX = ".dat";
+    // Cantidad de reportes en el journal que dispara una compactacion
+    private static final int COMPACTION_THRESHOLD = 10_000;
+
+    private final Path dataFolder;
+    // Snapshot vigente; lo cambia la compactacion al escribir una generacion nueva
+    private volatile Path dataFile;
+    private long generation;
+    private final boolean columnar;
+    // Journal donde se agrega cada reporte nuevo; las escrituras se hacen con su lock tomado
+    private final ReportJournal journal;
+    // Escribe en el journal segun la durabilidad elegida
+    private final GroupCommit commits;
+    // Hilo de fondo que escribe los snapshots
+    private final ExecutorService compactor;
+    private ReportRows rows;
+    // Secuencia del journal menos posicion de la fila: es distinta de 0 si hay reportes
+    // guardados que no se cargaron (por ejemplo, segmentos archivados)
+    private long seqOffset;
+    // Reportes agregados desde el ultimo snapshot
+    private int pendingSinceSnapshot;
+    // True mientras un snapshot se esta escribiendo
+    private boolean compactionRunning;
+    // Archivos guardados que no se pudieron leer; mientras haya alguno no se compacta
+    private final Set<String> unreadable = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * @param dataFolder carpeta del snapshot y del journal; se crea si hace falta
+     * @param columnar   true para guardar los reportes en memoria por columnas
+     * @param durability cuando se considera guardado un reporte
+     */
+    JournaledReportStore(Path dataFolder, boolean columnar, ReportManager.Durability durability) {
+        this.dataFolder = dataFolder;
+        this.dataFile = dataFolder.resolve(DATA_FILE);
+        this.columnar = columnar;
+        try {
+            Files.createDirectories(dataFolder);
+        } catch (IOException e) {
+            System.err.println("Error al crear carpeta data: " + e.getMessage());
+        }
+        journal = new ReportJournal(dataFolder);
+        commits = new GroupCommit(journal, durability);
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "report-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Lee el snapshot (formato binario de ReportCodec) y despues aplica los reportes
+     * del journal que no estan en el. Si el archivo todavia esta en el formato viejo
+     * de serializacion de Java, se migra una vez. Si no existe, las filas quedan vacias.
+     * Si falla a la mitad no se usa nada de lo leido: se cargan los reportes desde el primer
+     * segmento del journal y se suspende la compactacion, asi que al reponer el archivo
+     * y reiniciar se carga todo.
+     *
+     * @throws IllegalStateException si el snapshot no se puede leer y tampoco hay journal
+     *                               que indique desde que secuencia seguir
+     */
+    @Override
+    public synchronized ReportRows load() {
+        try {
+            dataFile = readCurrent();
+        } catch (IOException e) {
+            // Sin puntero no se sabe cual es la vigente: se carga la mas nueva, pero no se
+            // escribe una generacion nueva (podria pisar la vigente) ni se borran las otras
+            markUnreadable(CURRENT_FILE);
+            dataFile = latestGeneration();
+            System.err.println("Error al cargar reportes: " + e.getMessage() + ". Se carga "
+                    + dataFile.getFileName() + " y no se compacta hasta reiniciar.");
+        }
+        MappedSnapshot mapped = null;
+        try {
+            mapped = mapSnapshot();
+        } catch (IOException e) {
+            System.err.println("Error al cargar reportes: " + e.getMessage());
+        }
+        rows = new ReportRows(mapped, columnar);
+        long covered = -1;
+        if (mapped == null) {
+            try {
+                covered = readSnapshot(rows);
+            } catch (IOException e) {
+                // readSnapshot ya marco el archivo; las filas leidas antes del error se descartan
+                System.err.println("Error al cargar reportes: " + e.getMessage());
+                rows = new ReportRows(null, columnar);
+                covered = firstJournalSeq();
+            }
+        }
+        if (!hasUnreadable()) {
+            deleteOldGenerations();
+        }
+        rows.publish();
+        int loaded = rows.snapshot().size();
+        covered = Math.max(covered, loaded);
+        seqOffset = covered - loaded;
+        try {
+            long next = journal.replay(covered, rows::append);
+            rows.publishTrimmed();
+            journal.rotate(next);
+            pendingSinceSnapshot = (int) (next - covered);
+        } catch (IOException e) {
+            rows.publish();
+            System.err.println("Error al leer el journal: " + e.getMessage());
+        }
+        if (pendingSinceSnapshot >= COMPACTION_THRESHOLD) {
+            // Con pocos reportes en el journal no vale reescribir el snapshot en cada arranque:
+            // se siguen contando y se compacta al llegar al umbral
+            compact();
+        }
+        return rows;
+    }
+
+    /**
+     * Secuencia desde la que se sigue cuando el snapshot no se pudo leer: la del primer
+     * segmento del journal, que empieza donde termino la ultima compactacion.
+     */
+    private long firstJournalSeq() {
+        long first;
+        try {
+            first = journal.firstSegmentStart();
+        } catch (IOException e) {
+            first = -1;
+        }
+        if (first < 0) {
+            // Sin esa secuencia los reportes nuevos se guardarian con numeros que el snapshot
+            // ya usa y se perderian al reponerlo
+            throw new IllegalStateException("No se puede abrir el store: el snapshot " + dataFile.getFileName()
+                    + " no se puede leer y no hay journal. Revise ese archivo y reinicie.");
+        }
+        return first;
+    }
+
+    /**
+     * Registra un archivo que no se pudo leer: desde ahi no se escriben snapshots
+     * ni se borra nada guardado hasta reiniciar.
+     */
+    final void markUnreadable(String file) {
+        unreadable.add(file);
+    }
+
+    /**
+     * @return true si algun archivo guardado no se pudo leer en la carga
+     */
+    final boolean hasUnreadable() {
+        return !unreadable.isEmpty();
+    }
+
+    /**
+     * @return el snapshot que nombra databaseReports.current. Si no existe: databaseReports.dat
+     *         si esta, o la generacion mas nueva (una compactacion se corto antes de escribir
+     *         el primer puntero)
+     * @throws IOException si el puntero no se puede leer o no nombra una generacion que exista
+     */
+    private Path readCurrent() throws IOException {
+        Path pointer = dataFolder.resolve(CURRENT_FILE);
+        if (!Files.exists(pointer)) {
+            Path legacy = dataFolder.resolve(DATA_FILE);
+            return Files.exists(legacy) ? legacy : latestGeneration();
+        }
+        String name = new String(Files.readAllBytes(pointer), StandardCharsets.UTF_8).trim();
+        long gen = generationOf(name);
+        if (gen < 0) {
+            throw new IOException("Puntero de snapshot invalido en " + CURRENT_FILE + ": " + name);
+        }
+        Path file = dataFolder.resolve(name);
+        if (!Files.exists(file)) {
+            throw new IOException(CURRENT_FILE + " nombra un snapshot que no existe: " + name);
+        }
+        generation = gen;
+        return file;
+    }
+
+    /**
+     * @return la generacion mas nueva que hay en la carpeta, o databaseReports.dat si no hay
+     *         ninguna. Las generaciones se escriben en un .tmp y se renombran, asi que
+     *         un databaseReports.N.dat siempre esta completo.
+     */
+    private Path latestGeneration() {
+        Path latest = dataFolder.resolve(DATA_FILE);
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(dataFolder, GENERATION_PREFIX + "*" + GENERATION_SUFFIX)) {
+            for (Path p : dir) {
+                long gen = generationOf(p.getFileName().toString());
+                if (gen > generation) {
+                    generation = gen;
+                    latest = p;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al buscar snapshots: " + e.getMessage());
+        }
+        return latest;
+    }
+
+    /**
+     * @return la generacion de un archivo databaseReports.N.dat, o -1 si el nombre no es de ese tipo
+     */
+    private static long generationOf(String name) {
+        if (!name.startsWith(GENERATION_PREFIX) || !name.endsWith(GENERATION_SUFFIX)
+                || name.length() <= GENERATION_PREFIX.length() + GENERATION_SUFFIX.length()) {
+            return -1;
+        }
+        String digits = name.substring(GENERATION_PREFIX.length(), name.length() - GENERATION_SUFFIX.length());
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Borra las generaciones que no son la vigente: las reemplazadas mientras estaban
+     * mapeadas y las de una compactacion que se corto antes de cambiar el puntero.
+     * Al arrancar todavia no hay nada mapeado, asi que se pueden borrar en cualquier sistema.
+     */
+    private void deleteOldGenerations() {
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(dataFolder, GENERATION_PREFIX + "*")) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                boolean old = generationOf(name) >= 0
+                        || name.endsWith(GENERATION_SUFFIX + ".tmp") && generationOf(name.substring(0, name.length() - 4)) >= 0
+                        || name.equals(DATA_FILE) && generation > 0;
+                if (old && !p.equals(dataFile)) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al borrar snapshots viejos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return el snapshot vigente
+     */
+    final Path dataFile() {
+        return dataFile;
+    }
+
+    /**
+     * True si el archivo sigue mapeado en memoria y no se puede borrar todavia.
+     */
+    boolean isMapped(Path file) {
+        return false;
+    }
+
+    /**
+     * Agrega a las filas los reportes del snapshot, a medida que se leen.
+     *
+     * @return secuencia del journal que sigue al snapshot
+     * @throws IOException si el snapshot no se puede leer; antes de lanzarla se marca
+     *                     el archivo con markUnreadable
+     */
+    long readSnapshot(ReportRows rows) throws IOException {
+        if (!Files.exists(dataFile)) {
+            return 0;
+        }
+        try {
+            if (ReportCodec.isLegacyFile(dataFile)) {
+                List<Report> legacy = migrateLegacyFile();
+                for (Report r : legacy) {
+                    rows.append(r);
+                }
+                return legacy.size();
+            }
+            // Se agregan a medida que se leen, sin armar una lista intermedia
+            try (FileChannel ch = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+                return ReportCodec.readSnapshot(ch, rows::append);
+            }
+        } catch (IOException e) {
+            markUnreadable(dataFile.getFileName().toString());
+            throw e;
+        }
+    }
+
+    /**
+     * Guarda en disco todos los reportes de la foto. Se llama desde el hilo de compactacion.
+     *
+     * @param snapshot foto de los reportes
+     * @param covered  secuencia del journal que sigue al ultimo reporte de la foto
+     * @return true si quedo completo en disco y se pueden borrar los segmentos del journal
+     */
+    boolean writeSnapshot(ReportRows.Snapshot snapshot, long covered) {
+        return saveSnapshot(snapshot);
+    }
+
+    /**
+     * Mapea el snapshot si esta implementacion lo lee en el lugar.
+     *
+     * @return el snapshot mapeado, o null para cargarlo completo en memoria
+     */
+    MappedSnapshot mapSnapshot() throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean readsInPlace() {
+        return false;
+    }
+
+    /**
+     * Migra el archivo viejo (ArrayList serializado con ObjectOutputStream) al formato binario.
+     * El archivo original se conserva como databaseReports.dat.legacy.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Report> migrateLegacyFile() throws IOException {
+        List<Report> legacy = new ArrayList<>();
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(dataFile)))) {
+            Object obj = ois.readObject();
+            if (obj instanceof List) {
+                legacy = new ArrayList<>((List<Report>) obj);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Archivo de reportes invalido: " + e.getMessage(), e);
+        }
+        Files.copy(dataFile, dataFile.resolveSibling(DATA_FILE + ".legacy"), StandardCopyOption.REPLACE_EXISTING);
+        if (saveSnapshot(legacy)) {
+            System.out.println("Datos migrados al formato binario (" + legacy.size() + " reportes)");
+        }
+        return legacy;
+    }
+
+    /**
+     * Escribe la lista completa de reportes como una generacion nueva del snapshot con el
+     * formato de ReportCodec, cambia databaseReports.current para que la nombre y borra
+     * la anterior. Un corte a la mitad deja el puntero en la generacion anterior, completa.
+     * La anterior no se reemplaza ni se renombra, porque en modo MAPPED sigue mapeada
+     * (y en Windows un archivo mapeado no se puede reemplazar).
+     *
+     * @param snapshot foto de los reportes a guardar
+     * @return true si el snapshot quedo completo en disco
+     */
+    private boolean saveSnapshot(List<Report> snapshot) {
+        if (hasUnreadable()) {
+            return false;
+        }
+        long gen = generation + 1;
+        Path file = dataFolder.resolve(GENERATION_PREFIX + gen + GENERATION_SUFFIX);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ReportCodec.writeSnapshot(ch, snapshot);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeCurrent(file);
+        } catch (IOException e) {
+            System.err.println("Error al guardar reportes: " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Lo borra el proximo arranque
+            }
+            return false;
+        }
+        Path previous = dataFile;
+        dataFile = file;
+        generation = gen;
+        if (!isMapped(previous)) {
+            try {
+                Files.deleteIfExists(previous);
+            } catch (IOException e) {
+                System.err.println("Error al borrar el snapshot anterior: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reemplaza databaseReports.current de forma atomica. El puntero nunca se mapea,
+     * asi que se puede reemplazar aunque el snapshot anterior siga abierto.
+     */
+    private void writeCurrent(Path file) throws IOException {
+        Path tmp = dataFolder.resolve(CURRENT_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap((file.getFileName() + "\n").getBytes(StandardCharsets.UTF_8)));
+            ch.force(true);
+        }
+        Files.move(tmp, dataFolder.resolve(CURRENT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Escribe el reporte al final del journal (o lo encola para el proximo lote).
+     * No reescribe el snapshot; eso lo hace la compactacion en segundo plano.
+     */
+    @Override
+    public CompletableFuture<Void> append(long seq, Report r) {
+        return commits.append(seq + seqOffset, r);
+    }
+
+    /**
+     * Escribe el lote en el journal con una sola escritura y un solo fsync.
+     */
+    @Override
+    public CompletableFuture<Void> appendAll(long firstSeq, List<? extends Report> batch) {
+        return commits.appendAll(firstSeq + seqOffset, batch);
+    }
+
+    /**
+     * Compacta al llegar al umbral o si el journal quedo bloqueado por un error de escritura
+     * (no acepta registros hasta que un snapshot cubra el hueco). Se compacta aca, y no en
+     * el hilo que vio el error, porque este metodo lo llama el escritor: asi ningun reporte
+     * se publica mientras se toma la foto y se rota el journal.
+     */
+    @Override
+    public synchronized void published(int added) {
+        pendingSinceSnapshot += added;
+        if (pendingSinceSnapshot >= COMPACTION_THRESHOLD || journal.hasFailed()) {
+            compact();
+        }
+    }
+
+    /**
+     * Cambia a un segmento nuevo del journal y escribe en segundo plano un snapshot
+     * con todos los reportes publicados hasta ese punto. Cuando el snapshot queda en disco
+     * se borran los segmentos viejos.
+     */
+    synchronized void compact() {
+        if (compactionRunning) {
+            return;
+        }
+        // La foto es inmutable, no hace falta copiar la lista
+        final ReportRows.Snapshot snapshot = rows.snapshot();
+        final long covered = snapshot.size() + seqOffset;
+        // Lo encolado va al segmento actual antes de empezar el nuevo
+        commits.drain();
+        try {
+            synchronized (journal) {
+                journal.rotate(covered);
+            }
+        } catch (IOException e) {
+            System.err.println("Error al rotar el journal: " + e.getMessage());
+            return;
+        }
+        compactionRunning = true;
+        pendingSinceSnapshot = 0;
+        compactor.execute(() -> {
+            try {
+                if (hasUnreadable()) {
+                    // No se reemplaza el snapshot ni se borra el journal: al reiniciar se vuelve a cargar todo
+                    System.err.println("Compactacion suspendida: no se pudieron leer " + unreadable
+                            + ". Revise esos archivos y reinicie.");
+                } else if (writeSnapshot(snapshot, covered)) {
+                    journal.deleteSegmentsBefore(covered);
+                }
+            } finally {
+                synchronized (JournaledReportStore.this) {
+                    compactionRunning = false;
+                    JournaledReportStore.this.notifyAll();
+                }
+            }
+        });
+    }
+
+    private void awaitCompaction() {
+        boolean interrupted = false;
+        while (compactionRunning) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Escribe lo encolado, espera a que termine la compactacion pendiente y cierra el journal.
+     */
+    @Override
+    public void close() {
+        if (journal.hasFailed()) {
+            // Lo que el journal rechazo solo esta en memoria: se guarda en un snapshot,
+            // despues del que se este escribiendo (que puede no incluirlo)
+            synchronized (this) {
+                awaitCompaction();
+                compact();
+            }
+        }
+        commits.close();
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (journal) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el journal: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Como JournaledReportStore, pero el snapshot se mapea en memoria (ver MappedSnapshot)
+ * y sus reportes se leen del archivo recien cuando una consulta los usa.
+ * El arranque no depende de cuantos reportes hay y el heap solo guarda
+ * los reportes agregados despues del ultimo snapshot.
+ */
+final class MappedFileReportStore extends JournaledReportStore {
+    // Snapshot mapeado al arrancar; queda mapeado hasta que termina el proceso
+    private Path mappedFile;
+
+    MappedFileReportStore(Path dataFolder, ReportManager.Durability durability) {
+        super(dataFolder, false, durability);
+    }
+
+    @Override
+    MappedSnapshot mapSnapshot() throws IOException {
+        Path file = dataFile();
+        if (!Files.exists(file) || ReportCodec.isLegacyFile(file)) {
+            return null;
+        }
+        MappedSnapshot snapshot = MappedSnapshot.open(file);
+        mappedFile = snapshot != null ? file : null;
+        return snapshot;
+    }
+
+    /**
+     * Java no permite desmapear un archivo a mano: el buffer se libera cuando nadie lo usa
+     * o al terminar el proceso. Por eso el snapshot mapeado no se borra al compactar,
+     * lo borra el proximo arranque antes de mapear el nuevo.
+     */
+    @Override
+    boolean isMapped(Path file) {
+        return file.equals(mappedFile);
+    }
+
+    @Override
+    public synchronized ReportRows load() {
+        ReportRows rows = super.load();
+        if (mappedFile == null && !rows.snapshot().isEmpty()) {
+            // El snapshot no se pudo mapear (formato viejo o sin indice de posiciones):
+            // se reescribe para que el proximo arranque lo mapee
+            compact();
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean readsInPlace() {
+        return true;
+    }
+}
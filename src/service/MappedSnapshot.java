@@ -0,0 +1,156 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import model.Report;
+import model.Severity;
+
+/**
+ * Reportes de un snapshot respaldados por un MappedByteBuffer.
+ * Al abrir solo se lee el encabezado, el diccionario y el indice de posiciones
+ * del final del archivo, asi que el arranque no depende de cuantos reportes hay.
+ * Cada Report se crea recien cuando alguien lo pide con get(i).
+ * Es inmutable: los reportes agregados despues del snapshot los guarda ReportRows.
+ */
+final class MappedSnapshot {
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final MappedByteBuffer buffer;
+    private final String[] dictionary;
+    // Posicion de cada registro dentro del archivo
+    private final LongBuffer offsets;
+    private final int mappedCount;
+
+    private MappedSnapshot(MappedByteBuffer buffer, String[] dictionary, LongBuffer offsets, int mappedCount) {
+        this.buffer = buffer;
+        this.dictionary = dictionary;
+        this.offsets = offsets;
+        this.mappedCount = mappedCount;
+    }
+
+    /**
+     * Mapea el snapshot en memoria.
+     *
+     * @param file snapshot en formato binario
+     * @return el snapshot mapeado, o null si el archivo no se puede mapear
+     *         (version sin indice de posiciones o mas de 2 GB)
+     * @throws IOException si el archivo no tiene el formato esperado
+     */
+    static MappedSnapshot open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE || size < ReportCodec.HEADER_SIZE + ReportCodec.FOOTER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ReportCodec.Input in = new ReportCodec.Input(buffer.duplicate());
+            if (ReportCodec.readHeader(in) < 2) {
+                return null;
+            }
+            long count = in.readLong();
+            String[] dictionary = ReportCodec.readDictionary(in);
+            long indexStart = buffer.getLong((int) size - ReportCodec.FOOTER_SIZE);
+            if (indexStart < ReportCodec.HEADER_SIZE || indexStart > size - ReportCodec.FOOTER_SIZE) {
+                // Archivo cortado: el final no es el pie que escribio ReportCodec
+                throw new IOException("Indice de posiciones fuera del archivo en " + file.getFileName());
+            }
+            ByteBuffer index = buffer.duplicate();
+            index.position((int) indexStart);
+            index.limit((int) size - ReportCodec.FOOTER_SIZE);
+            LongBuffer offsets = index.slice().asLongBuffer();
+            if (offsets.remaining() != count) {
+                throw new IOException("Indice de posiciones incompleto en " + file.getFileName());
+            }
+            return new MappedSnapshot(buffer, dictionary, offsets, (int) count);
+        }
+    }
+
+    Report get(int index) {
+        try {
+            return ReportCodec.readRecordAt(buffer, offset(index), dictionary);
+        } catch (IOException e) {
+            throw new IllegalStateException("Registro " + index + " corrupto: " + e.getMessage(), e);
+        }
+    }
+
+    int count() {
+        return mappedCount;
+    }
+
+    // Accesos directos a los campos sin crear el Report
+
+    String equipmentIdAt(int index) {
+        int pos = skipVarLong(offset(index) + 2);
+        int dictIndex = (int) readVarLong(pos);
+        return dictIndex == 0 ? null : dictionary[dictIndex - 1];
+    }
+
+    Severity severityAt(int index) {
+        return SEVERITIES[buffer.get(offset(index) + 1)];
+    }
+
+    long epochDayAt(int index) {
+        long zigzag = readVarLong(offset(index) + 2);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    boolean isHardwareAt(int index) {
+        return buffer.get(offset(index)) == ReportCodec.TYPE_HARDWARE;
+    }
+
+    /**
+     * Solo para reportes de hardware.
+     */
+    String componentTypeAt(int index) {
+        int dictIndex = (int) readVarLong(componentPosition(index));
+        return dictIndex == 0 ? null : dictionary[dictIndex - 1];
+    }
+
+    /**
+     * Solo para reportes de hardware.
+     */
+    boolean needsReplacementAt(int index) {
+        int pos = skipVarLong(componentPosition(index));
+        pos = skipVarLong(pos);
+        return buffer.get(pos) != 0;
+    }
+
+    /**
+     * Posicion del primer campo propio del tipo: despues de fecha, equipo y descripcion.
+     */
+    private int componentPosition(int index) {
+        int pos = skipVarLong(offset(index) + 2);
+        pos = skipVarLong(pos);
+        long descriptionLength = readVarLong(pos);
+        pos = skipVarLong(pos);
+        // La longitud se guarda +1 (0 es null)
+        return descriptionLength == 0 ? pos : pos + (int) descriptionLength - 1;
+    }
+
+    private int offset(int index) {
+        return (int) offsets.get(index);
+    }
+
+    private long readVarLong(int pos) {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(pos++);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    private int skipVarLong(int pos) {
+        while ((buffer.get(pos) & 0x80) != 0) {
+            pos++;
+        }
+        return pos + 1;
+    }
+}
@@ -0,0 +1,29 @@
+package service;
+
+/**
+ * Metricas de una operacion de ReportManager publicadas por JMX (ver ReportMetrics).
+ * Los tiempos estan en microsegundos.
+ */
+public interface OperationMetricsMXBean {
+
+    long getCount();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Pone en cero los contadores y el histograma.
+     */
+    void reset();
+}
@@ -0,0 +1,448 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import model.Report;
+
+/**
+ * Como JournaledReportStore, pero el snapshot se parte en un archivo por mes de reportDate
+ * dentro de data/segments/ (formato de ReportCodec). La compactacion solo reescribe los meses
+ * que recibieron reportes nuevos, asi que guardar no toca los años de historia.
+ *
+ * - Los meses con mas de SEAL_AFTER_MONTHS meses de antiguedad se sellan: se guardan
+ *   comprimidos con gzip (reports-AAAA-MM.N.dat.gz).
+ * - Con retencion (reports.retention.months &gt; 0), al arrancar los meses mas viejos que
+ *   el limite no se cargan: se mueven a data/archive/ o, con reports.retention.archive=false,
+ *   se borran. Los reportes de esos meses que todavia estaban en el journal se cargan
+ *   igual y se retiran en el arranque siguiente. Un mes que no se pudo mover o borrar
+ *   sigue en el manifest y se carga hasta que se pueda retirar.
+ * - El archivo manifest lista los segmentos vigentes y la secuencia del journal que cubren.
+ *   Se reemplaza de forma atomica despues de escribir los segmentos, asi que un corte
+ *   a la mitad deja el manifest anterior y sus archivos intactos.
+ *
+ * Si no hay manifest pero si databaseReports.dat, se carga ese archivo y la primera
+ * compactacion lo reparte en segmentos. Una vez escrito el manifest, el archivo se borra.
+ *
+ * Si un segmento no se puede leer, sus reportes no se cargan (ni los que se leyeron antes
+ * del error) y se suspende la compactacion hasta reiniciar: reescribir ese mes con lo que
+ * quedo en memoria borraria la unica copia buena, y el journal tiene que seguir guardando
+ * los reportes nuevos de ese mes.
+ */
+final class PartitionedReportStore extends JournaledReportStore {
+    static final String SEGMENTS_FOLDER = "segments";
+    static final String ARCHIVE_FOLDER = "archive";
+    private static final String MANIFEST = "manifest";
+    private static final String SEGMENT_PREFIX = "reports-";
+    // Propiedades de la politica de retencion
+    private static final String RETENTION_PROPERTY = "reports.retention.months";
+    private static final String ARCHIVE_PROPERTY = "reports.retention.archive";
+    // Meses que un segmento sigue abierto (sin comprimir) despues de terminar
+    private static final int SEAL_AFTER_MONTHS = 1;
+    private static final int GZIP_BUFFER = 1 << 16;
+
+    private final Path segmentsFolder;
+    private final Path archiveFolder;
+    private final int retentionMonths;
+    private final boolean archive;
+    // Segmentos del ultimo manifest; solo los usan la carga y despues el hilo de compactacion
+    private Map<YearMonth, Segment> segments = new TreeMap<>();
+    private long generation;
+    private boolean fromManifest;
+
+    /**
+     * @param dataFolder      carpeta del journal; los segmentos van en dataFolder/segments
+     * @param durability      cuando se considera guardado un reporte
+     * @param retentionMonths meses que se conservan; 0 para no retirar nunca
+     * @param archive         true para mover los meses retirados a data/archive, false para borrarlos
+     */
+    PartitionedReportStore(Path dataFolder, ReportManager.Durability durability, int retentionMonths, boolean archive) {
+        super(dataFolder, false, durability);
+        if (retentionMonths < 0) {
+            throw new IllegalArgumentException("La retencion no puede ser negativa");
+        }
+        this.segmentsFolder = dataFolder.resolve(SEGMENTS_FOLDER);
+        this.archiveFolder = dataFolder.resolve(ARCHIVE_FOLDER);
+        this.retentionMonths = retentionMonths;
+        this.archive = archive;
+    }
+
+    /**
+     * Crea el store con la politica de retencion de las propiedades del sistema
+     * reports.retention.months (por defecto 0, sin limite) y reports.retention.archive
+     * (por defecto true).
+     */
+    static PartitionedReportStore fromProperties(Path dataFolder, ReportManager.Durability durability) {
+        int months = Integer.parseInt(System.getProperty(RETENTION_PROPERTY, "0").trim());
+        boolean archive = Boolean.parseBoolean(System.getProperty(ARCHIVE_PROPERTY, "true").trim());
+        return new PartitionedReportStore(dataFolder, durability, months, archive);
+    }
+
+    @Override
+    public synchronized ReportRows load() {
+        ReportRows rows = super.load();
+        if (!fromManifest && !rows.snapshot().isEmpty()) {
+            // Datos en el formato de un solo archivo: se reparten en segmentos
+            compact();
+        }
+        return rows;
+    }
+
+    /**
+     * Carga los segmentos del manifest, salvo los que quedaron fuera de la retencion.
+     */
+    @Override
+    long readSnapshot(ReportRows rows) throws IOException {
+        Files.createDirectories(segmentsFolder);
+        Path manifest = segmentsFolder.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return super.readSnapshot(rows);
+        }
+        fromManifest = true;
+        long covered;
+        try {
+            covered = readManifest(manifest);
+        } catch (IOException e) {
+            markUnreadable(SEGMENTS_FOLDER + "/" + MANIFEST);
+            throw e;
+        }
+        // Si se corto despues de escribir el primer manifest, el archivo viejo sigue ahi
+        deleteSingleFileSnapshot();
+        YearMonth limit = retentionMonths > 0 ? YearMonth.now().minusMonths(retentionMonths) : null;
+        boolean retired = false;
+        for (Segment s : segments.values().toArray(new Segment[0])) {
+            if (limit != null && s.month.isBefore(limit) && retire(s)) {
+                segments.remove(s.month);
+                retired = true;
+                continue;
+            }
+            try {
+                readSegment(s, rows);
+            } catch (IOException e) {
+                markUnreadable(SEGMENTS_FOLDER + "/" + s.file);
+                System.err.println("Error al cargar el segmento " + s.file + ": " + e.getMessage()
+                        + ". No se cargan sus reportes y no se compacta hasta reiniciar.");
+            }
+        }
+        if (retired) {
+            writeManifest(covered);
+        }
+        deleteUnlisted();
+        return covered;
+    }
+
+    /**
+     * Lee el segmento completo y recien entonces agrega sus reportes a las filas:
+     * si falla a la mitad no queda nada del mes agregado.
+     *
+     * @throws IOException si no se puede leer o no tiene la cantidad del manifest
+     */
+    private void readSegment(Segment s, ReportRows rows) throws IOException {
+        List<Report> reports = new ArrayList<>(s.count);
+        try (FileChannel ch = FileChannel.open(segmentsFolder.resolve(s.file), StandardOpenOption.READ)) {
+            if (s.isSealed()) {
+                InputStream in = new GZIPInputStream(Channels.newInputStream(ch), GZIP_BUFFER);
+                ReportCodec.readSnapshot(Channels.newChannel(in), reports::add);
+            } else {
+                ReportCodec.readSnapshot(ch, reports::add);
+            }
+        }
+        if (reports.size() != s.count) {
+            throw new IOException("tiene " + reports.size() + " reportes y el manifest dice " + s.count);
+        }
+        for (Report r : reports) {
+            rows.append(r);
+        }
+    }
+
+    /**
+     * Saca un segmento de la carga: lo mueve a data/archive o lo borra.
+     * Si falla, el segmento sigue en el manifest y se carga; se vuelve a intentar
+     * en el proximo arranque.
+     *
+     * @return true si el archivo ya no esta en data/segments
+     */
+    private boolean retire(Segment s) {
+        Path file = segmentsFolder.resolve(s.file);
+        try {
+            if (archive) {
+                Files.createDirectories(archiveFolder);
+                Files.move(file, archiveFolder.resolve(s.file), StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Segmento archivado: " + s.file + " (" + s.count + " reportes)");
+            } else {
+                Files.deleteIfExists(file);
+                System.out.println("Segmento borrado por retencion: " + s.file + " (" + s.count + " reportes)");
+            }
+        } catch (IOException e) {
+            System.err.println("Error al retirar el segmento " + s.file + ": " + e.getMessage()
+                    + ". Se conserva hasta el proximo arranque.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reescribe los meses cuya cantidad de reportes cambio desde el ultimo manifest
+     * (o que ya se tienen que sellar) y despues reemplaza el manifest.
+     * Como los reportes solo se agregan, un mes cambio si y solo si cambio su cantidad.
+     */
+    @Override
+    boolean writeSnapshot(ReportRows.Snapshot snapshot, long covered) {
+        Map<YearMonth, int[]> rowsByMonth = groupByMonth(snapshot);
+        YearMonth sealBefore = YearMonth.now().minusMonths(SEAL_AFTER_MONTHS);
+        Map<YearMonth, Segment> next = new TreeMap<>(segments);
+        Set<String> replaced = new HashSet<>();
+        long gen = generation + 1;
+        try {
+            for (Map.Entry<YearMonth, int[]> e : rowsByMonth.entrySet()) {
+                YearMonth month = e.getKey();
+                int[] monthRows = e.getValue();
+                boolean seal = month.isBefore(sealBefore);
+                Segment old = segments.get(month);
+                if (old != null && old.count == monthRows.length && old.isSealed() == seal) {
+                    continue;
+                }
+                Segment written = new Segment(month, monthRows.length, segmentName(month, gen, seal));
+                writeSegment(written, snapshot, monthRows);
+                next.put(month, written);
+                if (old != null) {
+                    replaced.add(old.file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al guardar reportes: " + e.getMessage());
+            return false;
+        }
+        Map<YearMonth, Segment> previous = segments;
+        long previousGeneration = generation;
+        segments = next;
+        generation = gen;
+        try {
+            writeManifest(covered);
+        } catch (IOException e) {
+            segments = previous;
+            generation = previousGeneration;
+            System.err.println("Error al guardar reportes: " + e.getMessage());
+            return false;
+        }
+        deleteSingleFileSnapshot();
+        for (String file : replaced) {
+            try {
+                Files.deleteIfExists(segmentsFolder.resolve(file));
+            } catch (IOException e) {
+                System.err.println("Error al borrar el segmento " + file + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Posiciones de la foto agrupadas por mes, en orden de llegada dentro de cada mes.
+     */
+    private static Map<YearMonth, int[]> groupByMonth(ReportRows.Snapshot snapshot) {
+        int n = snapshot.size();
+        // Primera pasada: mes de cada fila (indice en months) y cantidad por mes
+        Map<YearMonth, Integer> monthIds = new HashMap<>();
+        YearMonth[] months = new YearMonth[16];
+        int[] counts = new int[16];
+        int[] monthOfRow = new int[n];
+        long lastDay = Long.MIN_VALUE;
+        int lastId = -1;
+        for (int i = 0; i < n; i++) {
+            long day = snapshot.epochDayAt(i);
+            if (day != lastDay) {
+                YearMonth month = YearMonth.from(LocalDate.ofEpochDay(day));
+                Integer id = monthIds.get(month);
+                if (id == null) {
+                    id = monthIds.size();
+                    monthIds.put(month, id);
+                    if (id == months.length) {
+                        months = Arrays.copyOf(months, id * 2);
+                        counts = Arrays.copyOf(counts, id * 2);
+                    }
+                    months[id] = month;
+                }
+                lastDay = day;
+                lastId = id;
+            }
+            monthOfRow[i] = lastId;
+            counts[lastId]++;
+        }
+        // Segunda pasada: posiciones de cada mes
+        int[][] rows = new int[monthIds.size()][];
+        int[] filled = new int[monthIds.size()];
+        for (int id = 0; id < rows.length; id++) {
+            rows[id] = new int[counts[id]];
+        }
+        for (int i = 0; i < n; i++) {
+            int id = monthOfRow[i];
+            rows[id][filled[id]++] = i;
+        }
+        Map<YearMonth, int[]> result = new TreeMap<>();
+        for (int id = 0; id < rows.length; id++) {
+            result.put(months[id], rows[id]);
+        }
+        return result;
+    }
+
+    private void writeSegment(Segment s, ReportRows.Snapshot snapshot, int[] monthRows) throws IOException {
+        List<Report> reports = new AbstractList<Report>() {
+            @Override
+            public Report get(int index) {
+                return snapshot.get(monthRows[index]);
+            }
+
+            @Override
+            public int size() {
+                return monthRows.length;
+            }
+        };
+        try (FileChannel ch = FileChannel.open(segmentsFolder.resolve(s.file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (s.isSealed()) {
+                GZIPOutputStream gz = new GZIPOutputStream(Channels.newOutputStream(ch), GZIP_BUFFER);
+                ReportCodec.writeSnapshot(Channels.newChannel(gz), reports);
+                gz.finish();
+            } else {
+                ReportCodec.writeSnapshot(ch, reports);
+            }
+            ch.force(true);
+        }
+    }
+
+    private static String segmentName(YearMonth month, long gen, boolean sealed) {
+        return SEGMENT_PREFIX + month + "." + gen + ".dat" + (sealed ? ".gz" : "");
+    }
+
+    /**
+     * Lee el manifest: "covered N", "generation N" y una linea "AAAA-MM cantidad archivo" por segmento.
+     *
+     * @return la secuencia del journal cubierta por los segmentos
+     */
+    private long readManifest(Path manifest) throws IOException {
+        long covered = 0;
+        Map<YearMonth, Segment> read = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                try {
+                    if (parts[0].equals("covered")) {
+                        covered = Long.parseLong(parts[1]);
+                    } else if (parts[0].equals("generation")) {
+                        generation = Long.parseLong(parts[1]);
+                    } else if (parts.length == 3) {
+                        YearMonth month = YearMonth.parse(parts[0]);
+                        read.put(month, new Segment(month, Integer.parseInt(parts[1]), parts[2]));
+                    }
+                } catch (NumberFormatException | DateTimeParseException | IndexOutOfBoundsException e) {
+                    throw new IOException("Manifest invalido en la linea: " + line, e);
+                }
+            }
+        }
+        segments = read;
+        return covered;
+    }
+
+    /**
+     * Reemplaza el manifest de forma atomica con los segmentos actuales.
+     */
+    private void writeManifest(long covered) throws IOException {
+        Path tmp = segmentsFolder.resolve(MANIFEST + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(ch);
+            BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            w.write("covered " + covered + "\n");
+            w.write("generation " + generation + "\n");
+            for (Segment s : segments.values()) {
+                w.write(s.month + " " + s.count + " " + s.file + "\n");
+            }
+            w.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, segmentsFolder.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Borra el snapshot de un solo archivo (databaseReports.dat, o la generacion que nombre
+     * databaseReports.current) cuando ya hay un manifest: sus reportes estan en los segmentos.
+     * El puntero se borra primero, asi un corte a la mitad nunca deja un puntero a un archivo
+     * que no existe.
+     */
+    private void deleteSingleFileSnapshot() {
+        Path file = dataFile();
+        try {
+            Files.deleteIfExists(file.resolveSibling(CURRENT_FILE));
+            if (Files.deleteIfExists(file)) {
+                System.out.println("Snapshot anterior a los segmentos borrado: " + file.getFileName());
+            }
+        } catch (IOException e) {
+            System.err.println("Error al borrar " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borra los segmentos que no estan en el manifest (de una compactacion que se corto).
+     */
+    private void deleteUnlisted() {
+        Set<String> listed = new HashSet<>();
+        for (Segment s : segments.values()) {
+            listed.add(s.file);
+        }
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(segmentsFolder, SEGMENT_PREFIX + "*")) {
+            for (Path p : dir) {
+                if (!listed.contains(p.getFileName().toString())) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al limpiar segmentos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Un mes guardado: cantidad de reportes y nombre del archivo.
+     */
+    private static final class Segment {
+        final YearMonth month;
+        final int count;
+        final String file;
+
+        Segment(YearMonth month, int count, String file) {
+            this.month = month;
+            this.count = count;
+            this.file = file;
+        }
+
+        boolean isSealed() {
+            return file.endsWith(".gz");
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lista de posiciones de reportes ordenada por fecha.
+ * Cada entrada es un long con el epoch-day en los 32 bits altos y la posicion
+ * del reporte en los 32 bits bajos, asi que ordenar los long ordena por fecha
+ * y, si empatan, por orden de llegada (igual que el sort estable de antes).
+ *
+ * Las entradas se guardan en bloques ordenados de hasta CHUNK elementos.
+ * Un solo hilo escribe y muchos pueden leer sin locks: los lectores piden view()
+ * y trabajan sobre esa foto, que nunca cambia para ellos.
+ * - Si el reporte llega en orden de fecha (lo normal) se escribe en el ultimo bloque,
+ *   despues del tamaño publicado: O(1).
+ * - Si llega uno mas viejo se copia solo el bloque donde cae (partiendolo si se llena)
+ *   y el directorio de bloques: O(CHUNK + bloques) en vez de mover toda la lista.
+ * Los lotes (addAll) mezclan cada bloque tocado una sola vez y publican una sola foto.
+ * Para construir el indice desde cero se usa append + sort, que es O(n log n).
+ */
+final class PostingList {
+    private static final int CHUNK = 1024;
+    private static final long[][] NO_CHUNKS = new long[0][];
+    private static final int[] NO_STARTS = new int[0];
+    // Con mas listas que esto, conviene juntarlas con union() antes de recorrerlas
+    static final int MAX_MERGED_LISTS = 16;
+
+    // Estado del escritor
+    private long[][] chunks = NO_CHUNKS;
+    // Posicion global de la primera entrada de cada bloque
+    private int[] starts = NO_STARTS;
+    private int chunkCount;
+    private int size;
+    // Solo se usa durante la carga masiva
+    private long[] bulk;
+    private volatile View view = new View(NO_CHUNKS, NO_STARTS, 0, 0);
+
+    /**
+     * Clave de una entrada: el dia en los 32 bits altos y la fila en los bajos. Los reportes
+     * tienen fechas entre InputParser.MIN_DATE y MAX_DATE, que entran en un int; los dias de
+     * una consulta pueden ser cualquiera y se recortan a ese tamaño para no cambiar el orden.
+     */
+    static long key(long epochDay, int row) {
+        long day = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, epochDay));
+        return (day << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Agrega una entrada en su lugar y la publica. Solo lo llama el escritor.
+     */
+    void add(long epochDay, int row) {
+        long k = key(epochDay, row);
+        int last = chunkCount - 1;
+        int lastSize = size - (last < 0 ? 0 : starts[last]);
+        if (last < 0 || chunks[last][lastSize - 1] <= k) {
+            appendInOrder(k, last, lastSize);
+        } else {
+            insertOutOfOrder(k);
+        }
+        size++;
+        view = new View(chunks, starts, chunkCount, size);
+    }
+
+    private void appendInOrder(long k, int last, int lastSize) {
+        if (last >= 0 && lastSize < chunks[last].length) {
+            chunks[last][lastSize] = k;
+            return;
+        }
+        if (last >= 0 && lastSize < CHUNK) {
+            // Los bloques chicos crecen hasta CHUNK; se copia el directorio
+            // para que ningun lector vea el bloque nuevo sin sus datos
+            long[] grown = Arrays.copyOf(chunks[last], Math.min(CHUNK, lastSize * 2));
+            grown[lastSize] = k;
+            chunks = chunks.clone();
+            chunks[last] = grown;
+            return;
+        }
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(4, chunkCount * 2));
+            starts = Arrays.copyOf(starts, chunks.length);
+        }
+        long[] chunk = new long[chunkCount == 0 ? 4 : CHUNK];
+        chunk[0] = k;
+        chunks[chunkCount] = chunk;
+        starts[chunkCount] = size;
+        chunkCount++;
+    }
+
+    private void insertOutOfOrder(long k) {
+        int c = chunkFor(chunks, starts, chunkCount, k);
+        int chunkSize = chunkSize(starts, chunkCount, size, c);
+        long[] old = chunks[c];
+        int pos = Arrays.binarySearch(old, 0, chunkSize, k);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        long[] merged = new long[chunkSize + 1];
+        System.arraycopy(old, 0, merged, 0, pos);
+        merged[pos] = k;
+        System.arraycopy(old, pos, merged, pos + 1, chunkSize - pos);
+
+        boolean split = merged.length > CHUNK;
+        int newCount = chunkCount + (split ? 1 : 0);
+        long[][] newChunks = new long[Math.max(chunks.length, newCount)][];
+        int[] newStarts = new int[newChunks.length];
+        System.arraycopy(chunks, 0, newChunks, 0, c);
+        System.arraycopy(starts, 0, newStarts, 0, c + 1);
+        if (split) {
+            int half = merged.length / 2;
+            newChunks[c] = Arrays.copyOfRange(merged, 0, half);
+            newChunks[c + 1] = Arrays.copyOfRange(merged, half, merged.length);
+            newStarts[c + 1] = newStarts[c] + half;
+        } else {
+            newChunks[c] = merged;
+        }
+        int shift = split ? 1 : 0;
+        for (int i = c + 1; i < chunkCount; i++) {
+            newChunks[i + shift] = chunks[i];
+            newStarts[i + shift] = starts[i] + 1;
+        }
+        chunks = newChunks;
+        starts = newStarts;
+        chunkCount = newCount;
+    }
+
+    /**
+     * Agrega un lote de claves (ver key()) y lo publica de una vez. Solo lo llama el escritor.
+     * Cada bloque que recibe claves se mezcla una sola vez y el directorio se copia una sola vez,
+     * asi un lote de fechas desordenadas cuesta O(lote log lote + bloques tocados * CHUNK)
+     * en vez de copiar un bloque y el directorio por cada entrada.
+     *
+     * @param keys claves a agregar; se ordena en el lugar
+     * @param n    cantidad de claves validas en keys
+     */
+    void addAll(long[] keys, int n) {
+        if (n == 0) {
+            return;
+        }
+        Arrays.sort(keys, 0, n);
+        int last = chunkCount - 1;
+        if (last < 0 || keys[0] >= chunks[last][size - starts[last] - 1]) {
+            for (int i = 0; i < n; i++) {
+                int lastChunk = chunkCount - 1;
+                appendInOrder(keys[i], lastChunk, size - (lastChunk < 0 ? 0 : starts[lastChunk]));
+                size++;
+            }
+            view = new View(chunks, starts, chunkCount, size);
+            return;
+        }
+        long[][] newChunks = new long[chunkCount + n / (CHUNK / 2) + 4][];
+        int[] newStarts = new int[newChunks.length];
+        int newCount = 0;
+        int position = 0;
+        int k = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            int chunkSize = chunkSize(starts, chunkCount, size, c);
+            int end = n;
+            if (c < last) {
+                // Van a este bloque las claves menores que la primera del bloque siguiente
+                end = Arrays.binarySearch(keys, k, n, chunks[c + 1][0]);
+                end = end < 0 ? -end - 1 : lowerBoundOf(keys, k, end, chunks[c + 1][0]);
+            }
+            if (end == k) {
+                if (newCount == newChunks.length) {
+                    newChunks = Arrays.copyOf(newChunks, newCount * 2);
+                    newStarts = Arrays.copyOf(newStarts, newChunks.length);
+                }
+                newChunks[newCount] = chunks[c];
+                newStarts[newCount++] = position;
+                position += chunkSize;
+                continue;
+            }
+            long[] merged = merge(chunks[c], chunkSize, keys, k, end);
+            int pieces = (merged.length + CHUNK - 1) / CHUNK;
+            if (newCount + pieces > newChunks.length) {
+                newChunks = Arrays.copyOf(newChunks, (newCount + pieces) * 2);
+                newStarts = Arrays.copyOf(newStarts, newChunks.length);
+            }
+            for (int p = 0; p < pieces; p++) {
+                int from = (int) ((long) merged.length * p / pieces);
+                int to = (int) ((long) merged.length * (p + 1) / pieces);
+                newChunks[newCount] = pieces == 1 ? merged : Arrays.copyOfRange(merged, from, to);
+                newStarts[newCount++] = position + from;
+            }
+            position += merged.length;
+            k = end;
+        }
+        chunks = newChunks;
+        starts = newStarts;
+        chunkCount = newCount;
+        size += n;
+        view = new View(chunks, starts, chunkCount, size);
+    }
+
+    private static int lowerBoundOf(long[] keys, int from, int found, long k) {
+        while (found > from && keys[found - 1] == k) {
+            found--;
+        }
+        return found;
+    }
+
+    private static long[] merge(long[] chunk, int chunkSize, long[] keys, int from, int to) {
+        long[] merged = new long[chunkSize + to - from];
+        int i = 0;
+        int j = from;
+        int out = 0;
+        while (i < chunkSize && j < to) {
+            merged[out++] = chunk[i] <= keys[j] ? chunk[i++] : keys[j++];
+        }
+        while (i < chunkSize) {
+            merged[out++] = chunk[i++];
+        }
+        while (j < to) {
+            merged[out++] = keys[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Agrega al final sin mantener el orden ni publicar. Hay que llamar a sort() al terminar.
+     * Solo sirve mientras el indice todavia no es visible para los lectores.
+     */
+    void append(long epochDay, int row) {
+        if (bulk == null) {
+            bulk = new long[4];
+        } else if (size == bulk.length) {
+            bulk = Arrays.copyOf(bulk, size + (size >> 1) + 1);
+        }
+        bulk[size++] = key(epochDay, row);
+    }
+
+    /**
+     * Ordena lo cargado con append() y lo publica partido en bloques.
+     */
+    void sort() {
+        if (bulk == null) {
+            return;
+        }
+        Arrays.sort(bulk, 0, size);
+        chunkCount = (size + CHUNK - 1) / CHUNK;
+        chunks = new long[Math.max(4, chunkCount)][];
+        starts = new int[chunks.length];
+        for (int c = 0; c < chunkCount; c++) {
+            int from = c * CHUNK;
+            int to = Math.min(size, from + CHUNK);
+            chunks[c] = Arrays.copyOfRange(bulk, from, to);
+            starts[c] = from;
+        }
+        bulk = null;
+        view = new View(chunks, starts, chunkCount, size);
+    }
+
+    /**
+     * @return foto inmutable de la lista para leer sin locks
+     */
+    View view() {
+        return view;
+    }
+
+    /**
+     * Junta varias listas en una sola sin repetidos, para no mezclar muchas a la vez
+     * al recorrerlas (ver MAX_MERGED_LISTS). La lista nueva no se guarda en ningun indice.
+     */
+    static View union(List<View> lists) {
+        int total = 0;
+        for (View v : lists) {
+            total += v.size();
+        }
+        long[] keys = new long[total];
+        int n = 0;
+        for (View v : lists) {
+            for (int i = 0; i < v.size(); i++) {
+                keys[n++] = v.keyAt(i);
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || keys[distinct - 1] != keys[i]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        PostingList merged = new PostingList();
+        merged.addAll(keys, distinct);
+        return merged.view();
+    }
+
+    private static int chunkSize(int[] starts, int chunkCount, int size, int c) {
+        return (c == chunkCount - 1 ? size : starts[c + 1]) - starts[c];
+    }
+
+    /**
+     * Ultimo bloque cuya primera entrada es menor o igual a la clave (o el primero).
+     */
+    private static int chunkFor(long[][] chunks, int[] starts, int chunkCount, long k) {
+        int lo = 0;
+        int hi = chunkCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chunks[mid][0] <= k) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    static final class View {
+        private final long[][] chunks;
+        private final int[] starts;
+        private final int chunkCount;
+        private final int size;
+
+        private View(long[][] chunks, int[] starts, int chunkCount, int size) {
+            this.chunks = chunks;
+            this.starts = starts;
+            this.chunkCount = chunkCount;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long keyAt(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("Posicion " + i + " de " + size);
+            }
+            int c = chunkOf(i);
+            return chunks[c][i - starts[c]];
+        }
+
+        int rowAt(int i) {
+            return (int) keyAt(i);
+        }
+
+        long epochDayAt(int i) {
+            return keyAt(i) >> 32;
+        }
+
+        /**
+         * Busqueda binaria de la primera entrada con fecha mayor o igual a epochDay.
+         *
+         * @return indice de la entrada, o size() si todas son anteriores
+         */
+        int lowerBound(long epochDay) {
+            return lowerBoundKey(key(epochDay, 0));
+        }
+
+        /**
+         * Busqueda binaria de la primera entrada con clave (ver key()) mayor o igual a k.
+         *
+         * @return indice de la entrada, o size() si todas son menores
+         */
+        int lowerBoundKey(long k) {
+            if (size == 0) {
+                return 0;
+            }
+            int c = chunkFor(chunks, starts, chunkCount, k);
+            int n = chunkSize(starts, chunkCount, size, c);
+            int pos = Arrays.binarySearch(chunks[c], 0, n, k);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            return starts[c] + pos;
+        }
+
+        private int chunkOf(int i) {
+            int pos = Arrays.binarySearch(starts, 0, chunkCount, i);
+            return pos >= 0 ? pos : -pos - 2;
+        }
+    }
+}
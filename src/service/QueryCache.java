@@ -0,0 +1,199 @@
+package service;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+
+/**
+ * Cache LRU de resultados de consultas, con tope de entradas y de reportes guardados en total.
+ *
+ * Cada entrada recuerda su alcance (severidades, equipo, rango de fechas y tipo): al agregar
+ * un reporte solo se borran las entradas cuyo alcance lo incluye, las demas siguen valiendo.
+ * Los criterios de detalle (componente, texto, version...) no entran en el alcance, asi que
+ * una entrada con esos criterios se borra aunque el reporte nuevo no los cumpla.
+ *
+ * Para no guardar un resultado viejo, el que consulta lee version() antes de tomar la foto
+ * de los reportes y put() lo descarta si entre medio se agrego algo. Todo pasa con el lock
+ * de la cache; las consultas en si se hacen afuera.
+ */
+final class QueryCache {
+    private final int maxEntries;
+    private final int maxReports;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Reportes guardados en todas las entradas
+    private int reports;
+    // Cambia con cada reporte agregado
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maxEntries cantidad maxima de consultas guardadas; 0 desactiva la cache
+     * @param maxReports cantidad maxima de reportes entre todas las consultas guardadas
+     */
+    QueryCache(int maxEntries, int maxReports) {
+        this.maxEntries = maxEntries;
+        this.maxReports = maxReports;
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * @return el resultado guardado, o null si no esta
+     */
+    synchronized Object get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.value;
+    }
+
+    /**
+     * Guarda un resultado, salvo que se haya agregado algun reporte desde versionBefore
+     * o que el resultado solo ya pase el tope de reportes.
+     *
+     * @param weight cantidad de reportes del resultado
+     */
+    synchronized void put(String key, Scope scope, Object value, int weight, long versionBefore) {
+        if (!isEnabled() || versionBefore != version || weight > maxReports) {
+            return;
+        }
+        Entry old = entries.put(key, new Entry(scope, value, weight));
+        if (old != null) {
+            reports -= old.weight;
+        }
+        reports += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || reports > maxReports) {
+            reports -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Borra las consultas cuyo resultado puede cambiar con los reportes agregados.
+     * Con lotes grandes revisar cada reporte contra cada entrada sale mas caro que
+     * empezar de nuevo, y se borra todo.
+     */
+    synchronized void invalidate(Collection<? extends Report> added) {
+        version++;
+        if (entries.isEmpty()) {
+            return;
+        }
+        if ((long) added.size() * entries.size() > maxEntries * 64L) {
+            invalidations += entries.size();
+            entries.clear();
+            reports = 0;
+            return;
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            for (Report r : added) {
+                if (e.scope.includes(r)) {
+                    reports -= e.weight;
+                    it.remove();
+                    invalidations++;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return hits, misses, evictions, invalidations, entries y reports, en ese orden
+     */
+    synchronized Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        stats.put("entries", (long) entries.size());
+        stats.put("reports", (long) reports);
+        return stats;
+    }
+
+    /**
+     * Que reportes pueden cambiar el resultado de una consulta.
+     */
+    static final class Scope {
+        private final Set<Severity> severities;
+        private final String equipment;
+        private final long fromDay;
+        private final long toDay;
+        private final ReportQuery.ReportType type;
+
+        /**
+         * @param severities severidades; vacio para todas
+         * @param equipment  equipo, o null para todos
+         * @param fromDay    primer dia (epochDay) incluido
+         * @param toDay      ultimo dia (epochDay) incluido
+         * @param type       tipo de reporte, o null para los dos
+         */
+        Scope(Set<Severity> severities, String equipment, long fromDay, long toDay, ReportQuery.ReportType type) {
+            this.severities = severities.isEmpty() ? EnumSet.allOf(Severity.class) : EnumSet.copyOf(severities);
+            this.equipment = equipment;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.type = type;
+        }
+
+        static Scope of(ReportQuery q) {
+            return new Scope(q.getSeverities(),
+                    q.getEquipmentId(),
+                    q.getFrom() == null ? Long.MIN_VALUE : q.getFrom().toEpochDay(),
+                    q.getTo() == null ? Long.MAX_VALUE : q.getTo().toEpochDay(),
+                    q.getType());
+        }
+
+        boolean includes(Report r) {
+            if (!severities.contains(r.getSeverity())) {
+                return false;
+            }
+            long day = r.getReportDate().toEpochDay();
+            if (day < fromDay || day > toDay) {
+                return false;
+            }
+            if (type != null && (r instanceof HardwareReport) != (type == ReportQuery.ReportType.HARDWARE)) {
+                return false;
+            }
+            // El indice compara con fold y el filtro por fila con equalsIgnoreCase: vale cualquiera
+            return equipment == null || equipment.equalsIgnoreCase(r.getEquipmentId())
+                    || EquipmentIndex.fold(equipment).equals(EquipmentIndex.fold(r.getEquipmentId()));
+        }
+    }
+
+    private static final class Entry {
+        final Scope scope;
+        final Object value;
+        final int weight;
+
+        Entry(Scope scope, Object value, int weight) {
+            this.scope = scope;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.Severity;
+
+/**
+ * Plan de ejecucion de un ReportQuery.
+ * El planificador calcula cuantas posiciones tendria que recorrer con cada indice
+ * (equipo, severidad, texto, version o fecha) y se queda con el que da menos. Las tres listas estan
+ * ordenadas por fecha y el rango de fechas se aplica con busqueda binaria en cualquiera
+ * de ellas, asi que el resultado sale ordenado y se puede cortar apenas se llega al limite.
+ * Los demas criterios se revisan fila por fila sobre las posiciones elegidas.
+ */
+final class QueryPlan {
+    enum Source {
+        EQUIPMENT,
+        SEVERITY,
+        TEXT,
+        VERSION,
+        DATE
+    }
+
+    final Source source;
+    // Rangos [start, end) de las listas a recorrer; con severidad puede haber varias
+    private final PostingList.View[] lists;
+    private final int[] starts;
+    private final int[] ends;
+    final long estimatedRows;
+
+    private QueryPlan(Source source, List<PostingList.View> lists, List<int[]> ranges) {
+        this.source = source;
+        this.lists = lists.toArray(new PostingList.View[0]);
+        this.starts = new int[ranges.size()];
+        this.ends = new int[ranges.size()];
+        long estimate = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            starts[i] = ranges.get(i)[0];
+            ends[i] = ranges.get(i)[1];
+            estimate += ends[i] - starts[i];
+        }
+        this.estimatedRows = estimate;
+    }
+
+    /**
+     * Elige el indice mas selectivo para la consulta.
+     */
+    static QueryPlan choose(ReportQuery q, ReportIndexes indexes) {
+        QueryPlan best = single(Source.DATE, indexes.byDate.view(), q);
+        if (q.getEquipmentId() != null) {
+            QueryPlan byEquipment = single(Source.EQUIPMENT, indexes.equipment.rows(q.getEquipmentId()), q);
+            if (byEquipment.estimatedRows <= best.estimatedRows) {
+                best = byEquipment;
+            }
+        }
+        if (!q.getSeverities().isEmpty() && q.getSeverities().size() < Severity.values().length) {
+            List<PostingList.View> lists = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>();
+            for (Severity s : q.getSeverities()) {
+                PostingList.View rows = indexes.severity.rows(s);
+                lists.add(rows);
+                ranges.add(range(rows, q));
+            }
+            QueryPlan bySeverity = new QueryPlan(Source.SEVERITY, lists, ranges);
+            if (bySeverity.estimatedRows < best.estimatedRows
+                    || (bySeverity.estimatedRows == best.estimatedRows && best.source == Source.DATE)) {
+                best = bySeverity;
+            }
+        }
+        TextQuery text = q.getTextQuery();
+        if (text != null && indexes.descriptionText != null) {
+            QueryPlan byText = several(Source.TEXT, text.candidates(indexes.descriptionText,
+                    q.isTextInDetails() ? indexes.detailText : null), q);
+            if (byText.estimatedRows < best.estimatedRows) {
+                best = byText;
+            }
+        }
+        if (q.hasVersionRange() && indexes.versions != null) {
+            QueryPlan byVersion = several(Source.VERSION, indexes.versions.rows(q.getSoftwareName(),
+                    q.getPackedVersionFrom(), q.getPackedVersionTo()), q);
+            if (byVersion.estimatedRows < best.estimatedRows) {
+                best = byVersion;
+            }
+        }
+        return best;
+    }
+
+    private static QueryPlan single(Source source, PostingList.View rows, ReportQuery q) {
+        List<PostingList.View> lists = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        lists.add(rows);
+        ranges.add(range(rows, q));
+        return new QueryPlan(source, lists, ranges);
+    }
+
+    /**
+     * Plan que mezcla varias listas; si son muchas se juntan antes en una sola.
+     */
+    private static QueryPlan several(Source source, List<PostingList.View> lists, ReportQuery q) {
+        if (lists.size() > PostingList.MAX_MERGED_LISTS) {
+            return single(source, PostingList.union(lists), q);
+        }
+        List<int[]> ranges = new ArrayList<>();
+        for (PostingList.View rows : lists) {
+            ranges.add(range(rows, q));
+        }
+        return new QueryPlan(source, lists, ranges);
+    }
+
+    private static int[] range(PostingList.View rows, ReportQuery q) {
+        int start = q.getFrom() == null ? 0 : rows.lowerBound(q.getFrom().toEpochDay());
+        int end = q.getTo() == null ? rows.size() : rows.lowerBound(q.getTo().toEpochDay() + 1);
+        return new int[]{start, Math.max(start, end)};
+    }
+
+    /**
+     * @return true si el filtro de equipo todavia hay que revisarlo fila por fila
+     */
+    boolean checksEquipment(ReportQuery q) {
+        return q.getEquipmentId() != null && source != Source.EQUIPMENT;
+    }
+
+    /**
+     * @return true si el filtro de severidad todavia hay que revisarlo fila por fila
+     */
+    boolean checksSeverity(ReportQuery q) {
+        return !q.getSeverities().isEmpty()
+                && q.getSeverities().size() < Severity.values().length
+                && source != Source.SEVERITY;
+    }
+
+    /**
+     * Recorre las posiciones del plan en orden de fecha. Si hay varias listas
+     * (varias severidades o palabras) se mezclan como en un merge sort,
+     * sin repetir las posiciones que estan en mas de una lista.
+     *
+     * @param newestFirst true para ir de la fecha mas nueva a la mas vieja
+     * @param rowLimit    posiciones desde esta en adelante no estan en la foto del lector y se saltan
+     */
+    Cursor cursor(boolean newestFirst, int rowLimit) {
+        return new Cursor(newestFirst, rowLimit);
+    }
+
+    String describe() {
+        return "indice=" + source + ", filas estimadas=" + estimatedRows;
+    }
+
+    /**
+     * Recorre las posiciones del plan en orden de fecha (ver cursor()) y permite
+     * continuar despues de la ultima clave entregada (ver resumeAfter()).
+     */
+    final class Cursor {
+        private final boolean newestFirst;
+        private final int rowLimit;
+        private final int[] positions;
+        // Ultima clave entregada, para no repetirla
+        private long lastKey;
+        private boolean started;
+
+        private Cursor(boolean newestFirst, int rowLimit) {
+            this.newestFirst = newestFirst;
+            this.rowLimit = rowLimit;
+            this.positions = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                positions[i] = newestFirst ? ends[i] - 1 : starts[i];
+            }
+        }
+
+        /**
+         * Saltea todo lo que, en el orden del cursor, va hasta la clave indicada inclusive.
+         * Se usa para seguir una consulta paginada donde termino la pagina anterior.
+         *
+         * @param key clave (ver PostingList.key) del ultimo reporte ya entregado
+         * @return este mismo cursor
+         */
+        Cursor resumeAfter(long key) {
+            for (int i = 0; i < lists.length; i++) {
+                if (newestFirst) {
+                    positions[i] = Math.min(positions[i], lists[i].lowerBoundKey(key) - 1);
+                } else {
+                    positions[i] = Math.max(positions[i],
+                            key == Long.MAX_VALUE ? ends[i] : lists[i].lowerBoundKey(key + 1));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return clave de la ultima posicion entregada por next()
+         */
+        long lastKey() {
+            return lastKey;
+        }
+
+        /**
+         * @return la siguiente posicion, o -1 si no quedan
+         */
+        int next() {
+            int row;
+            do {
+                row = step();
+            } while (row >= rowLimit);
+            return row;
+        }
+
+        private int step() {
+            int row;
+            do {
+                row = stepAny();
+            } while (row == -2);
+            return row;
+        }
+
+        /**
+         * @return la siguiente posicion, -1 si no quedan o -2 si repite la anterior
+         */
+        private int stepAny() {
+            int chosen = -1;
+            long chosenKey = 0;
+            for (int i = 0; i < lists.length; i++) {
+                int p = positions[i];
+                if (newestFirst ? p < starts[i] : p >= ends[i]) {
+                    continue;
+                }
+                long k = lists[i].keyAt(p);
+                if (chosen < 0 || (newestFirst ? k > chosenKey : k < chosenKey)) {
+                    chosen = i;
+                    chosenKey = k;
+                }
+            }
+            if (chosen < 0) {
+                return -1;
+            }
+            int row = lists[chosen].rowAt(positions[chosen]);
+            positions[chosen] += newestFirst ? -1 : 1;
+            if (started && chosenKey == lastKey) {
+                return -2;
+            }
+            started = true;
+            lastKey = chosenKey;
+            return row;
+        }
+    }
+}
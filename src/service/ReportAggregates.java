@@ -0,0 +1,315 @@
+package service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import model.Severity;
+
+/**
+ * Contadores que se actualizan con cada reporte nuevo, para responder estadisticas
+ * sin recorrer los reportes: por severidad, por equipo, por tipo de componente,
+ * reemplazos pendientes (hardware con needsReplacement) y cantidad por dia y severidad.
+ *
+ * Un solo hilo escribe (el mismo que actualiza los indices) y muchos leen sin locks.
+ * El escritor incrementa version despues de cada cambio y los lectores la leen antes,
+ * asi ven todos los cambios anteriores a esa version.
+ * Equipos y componentes se agrupan sin distinguir mayusculas, como en las consultas;
+ * se muestran con el texto del primer reporte que los uso.
+ */
+final class ReportAggregates {
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final int[] bySeverity = new int[SEVERITIES.length];
+    private final Map<String, Counter> byEquipment = new ConcurrentHashMap<>();
+    private final Map<String, Counter> byComponent = new ConcurrentHashMap<>();
+    private volatile int openReplacements;
+    private final Days days = new Days();
+    private volatile long version;
+    // Ultimo ranking calculado; sirve mientras no cambie la version
+    private volatile TopEquipment lastTop;
+
+    /**
+     * Cuenta un reporte. Solo lo llama el escritor.
+     *
+     * @param componentType tipo de componente, o null si es de software
+     */
+    void add(String equipmentId, Severity severity, long epochDay, boolean hardware,
+             String componentType, boolean needsReplacement) {
+        int s = severity.ordinal();
+        bySeverity[s]++;
+        boolean open = hardware && needsReplacement;
+        Counter equipment = byEquipment.computeIfAbsent(EquipmentIndex.fold(equipmentId),
+                k -> new Counter(equipmentId == null ? "" : equipmentId));
+        equipment.increment(open);
+        if (hardware) {
+            Counter component = byComponent.computeIfAbsent(EquipmentIndex.fold(componentType),
+                    k -> new Counter(componentType == null ? "" : componentType));
+            component.increment(open);
+            if (open) {
+                openReplacements++;
+            }
+        }
+        countDay(epochDay, s);
+        version++;
+    }
+
+    /**
+     * Lee la version (volatil): despues de esto se ve todo lo que el escritor cambio hasta ella.
+     */
+    private long sync() {
+        return version;
+    }
+
+    private void countDay(long epochDay, int severity) {
+        days.increment(epochDay, severity);
+    }
+
+    Map<Severity, Integer> countsBySeverity() {
+        sync();
+        Map<Severity, Integer> counts = new EnumMap<>(Severity.class);
+        for (Severity s : SEVERITIES) {
+            counts.put(s, bySeverity[s.ordinal()]);
+        }
+        return counts;
+    }
+
+    Map<String, Integer> countsByEquipment() {
+        return toMap(byEquipment, false);
+    }
+
+    Map<String, Integer> countsByComponentType() {
+        return toMap(byComponent, false);
+    }
+
+    Map<String, Integer> openReplacementsByEquipment() {
+        return toMap(byEquipment, true);
+    }
+
+    int openReplacements() {
+        return openReplacements;
+    }
+
+    private Map<String, Integer> toMap(Map<String, Counter> counters, boolean open) {
+        sync();
+        Map<String, Integer> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Counter c : counters.values()) {
+            int n = open ? c.open : c.count;
+            if (n > 0) {
+                result.put(c.label, n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Los n equipos con mas reportes, de mayor a menor (empate: por nombre).
+     * Se recorre solo el mapa de equipos con un heap de tamaño n, y el resultado
+     * se reusa hasta que llegue un reporte nuevo.
+     */
+    Map<String, Integer> topEquipment(int n) {
+        long v = sync();
+        TopEquipment cached = lastTop;
+        if (cached != null && cached.version == v && cached.n == n) {
+            return cached.result;
+        }
+        PriorityQueue<Counter> heap = new PriorityQueue<>(Math.max(1, n), ReportAggregates::compareRank);
+        for (Counter c : byEquipment.values()) {
+            if (heap.size() < n) {
+                heap.add(c);
+            } else if (n > 0 && compareRank(c, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(c);
+            }
+        }
+        List<Counter> ranked = new ArrayList<>(heap);
+        ranked.sort((a, b) -> compareRank(b, a));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Counter c : ranked) {
+            result.put(c.label, c.count);
+        }
+        result = Collections.unmodifiableMap(result);
+        lastTop = new TopEquipment(v, n, result);
+        return result;
+    }
+
+    /**
+     * Orden de ranking: menos reportes primero; con igual cantidad, el nombre mayor primero.
+     */
+    private static int compareRank(Counter a, Counter b) {
+        int byCount = Integer.compare(a.count, b.count);
+        return byCount != 0 ? byCount : b.label.compareToIgnoreCase(a.label);
+    }
+
+    /**
+     * Cantidad de reportes por periodo entre from y to (incluidos). Cada periodo se identifica
+     * por su primer dia: el mismo dia, el lunes de la semana, el dia 1 del mes o el 1 de enero.
+     * Se devuelven todos los periodos del rango, tambien los que tienen 0.
+     *
+     * @param bucket     DAYS, WEEKS, MONTHS o YEARS
+     * @param from       fecha inicial, o null para la primera con reportes
+     * @param to         fecha final, o null para la ultima con reportes
+     * @param severities severidades a contar; vacio cuenta todas
+     */
+    SortedMap<LocalDate, Integer> histogram(ChronoUnit bucket, LocalDate from, LocalDate to, Severity... severities) {
+        sync();
+        Days d = days;
+        SortedMap<LocalDate, Integer> result = new TreeMap<>();
+        long first = d.first;
+        long last = d.last;
+        if (from == null || to == null) {
+            if (first > last) {
+                return result;
+            }
+            from = from == null ? LocalDate.ofEpochDay(first) : from;
+            to = to == null ? LocalDate.ofEpochDay(last) : to;
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("La fecha final es anterior a la inicial");
+        }
+        // Fuera del rango de fechas aceptado no hay reportes: no se arman periodos en cero
+        from = from.isBefore(InputParser.MIN_DATE) ? InputParser.MIN_DATE : from;
+        to = to.isAfter(InputParser.MAX_DATE) ? InputParser.MAX_DATE : to;
+        int[] selected = selectOrdinals(severities);
+        LocalDate start = bucketStart(bucket, from);
+        for (LocalDate b = start; !b.isAfter(to); b = b.plus(1, bucket)) {
+            long bucketFrom = Math.max(b.toEpochDay(), from.toEpochDay());
+            long bucketTo = Math.min(b.plus(1, bucket).toEpochDay() - 1, to.toEpochDay());
+            result.put(b, d.sum(selected, bucketFrom, bucketTo));
+        }
+        return result;
+    }
+
+    private static int[] selectOrdinals(Severity... severities) {
+        Severity[] selected = severities.length == 0 ? SEVERITIES : severities;
+        int[] ordinals = new int[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            ordinals[i] = selected[i].ordinal();
+        }
+        return ordinals;
+    }
+
+    private static LocalDate bucketStart(ChronoUnit bucket, LocalDate date) {
+        switch (bucket) {
+            case DAYS:
+                return date;
+            case WEEKS:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHS:
+                return date.withDayOfMonth(1);
+            case YEARS:
+                return date.withDayOfYear(1);
+            default:
+                throw new IllegalArgumentException("Periodo no soportado: " + bucket + ". Use DAYS, WEEKS, MONTHS o YEARS");
+        }
+    }
+
+    /**
+     * Contador de un equipo o componente. Solo el escritor lo incrementa.
+     */
+    private static final class Counter {
+        final String label;
+        volatile int count;
+        volatile int open;
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        void increment(boolean openReplacement) {
+            count++;
+            if (openReplacement) {
+                open++;
+            }
+        }
+    }
+
+    /**
+     * Cantidad por dia y severidad en bloques de BLOCK_DAYS dias. El indice de bloques cubre
+     * todo el rango de fechas aceptado (InputParser.MIN_DATE a MAX_DATE, unas 3600 entradas)
+     * y cada bloque se crea con el primer reporte de sus dias, asi que fechas muy separadas
+     * no reservan los dias del medio. Solo el escritor crea bloques e incrementa.
+     */
+    private static final class Days {
+        private static final int BLOCK_BITS = 10;
+        private static final int BLOCK_DAYS = 1 << BLOCK_BITS;
+        private static final long MIN_DAY = InputParser.MIN_DATE.toEpochDay();
+        private static final long MAX_DAY = InputParser.MAX_DATE.toEpochDay();
+
+        private final int[][][] blocks = new int[(int) ((MAX_DAY - MIN_DAY) >> BLOCK_BITS) + 1][][];
+        // Primer y ultimo dia con reportes; first > last si no hay ninguno
+        volatile long first = 1;
+        volatile long last = 0;
+
+        void increment(long epochDay, int severity) {
+            if (epochDay < MIN_DAY || epochDay > MAX_DAY) {
+                // Solo puede venir de un archivo escrito antes de que se validaran las fechas
+                return;
+            }
+            long offset = epochDay - MIN_DAY;
+            int b = (int) (offset >> BLOCK_BITS);
+            int[][] block = blocks[b];
+            if (block == null) {
+                block = new int[SEVERITIES.length][BLOCK_DAYS];
+                blocks[b] = block;
+            }
+            block[severity][(int) (offset & (BLOCK_DAYS - 1))]++;
+            if (first > last) {
+                first = epochDay;
+                last = epochDay;
+            } else if (epochDay < first) {
+                first = epochDay;
+            } else if (epochDay > last) {
+                last = epochDay;
+            }
+        }
+
+        /**
+         * @param severities ordinales de las severidades a sumar
+         */
+        int sum(int[] severities, long fromDay, long toDay) {
+            long from = Math.max(fromDay, MIN_DAY) - MIN_DAY;
+            long to = Math.min(toDay, MAX_DAY) - MIN_DAY;
+            int total = 0;
+            while (from <= to) {
+                int b = (int) (from >> BLOCK_BITS);
+                long blockEnd = Math.min(to, ((long) (b + 1) << BLOCK_BITS) - 1);
+                int[][] block = blocks[b];
+                if (block != null) {
+                    int lo = (int) (from & (BLOCK_DAYS - 1));
+                    int hi = (int) (blockEnd & (BLOCK_DAYS - 1));
+                    for (int s : severities) {
+                        int[] perDay = block[s];
+                        for (int i = lo; i <= hi; i++) {
+                            total += perDay[i];
+                        }
+                    }
+                }
+                from = blockEnd + 1;
+            }
+            return total;
+        }
+    }
+
+    private static final class TopEquipment {
+        final long version;
+        final int n;
+        final Map<String, Integer> result;
+
+        TopEquipment(long version, int n, Map<String, Integer> result) {
+            this.version = version;
+            this.n = n;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package service;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+
+/**
+ * Formato binario propio para guardar reportes, reemplaza la serializacion de Java.
+ *
+ * Snapshot:
+ * [magic "RPTS"][version short][cantidad de reportes long]
+ * [cantidad de textos varint][textos del diccionario][registros]
+ * [posicion de cada registro long...][posicion del indice long]
+ * La version 1 no tenia el indice de posiciones al final; se sigue pudiendo leer.
+ *
+ * Registro:
+ * [tipo byte][severidad byte][fecha epoch-day varint zigzag][equipo][descripcion]
+ * Hardware: [componente][numero de serie varint][necesita reemplazo byte]
+ * Software: [sistema operativo][nombre][version]
+ *
+ * En el snapshot los textos que se repiten (equipo, componente, sistema operativo,
+ * nombre y version) se guardan como indice al diccionario. La descripcion casi nunca
+ * se repite, asi que siempre va en linea. En el journal todo va en linea.
+ */
+final class ReportCodec {
+    static final int MAGIC = 0x52505453;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 14;
+    static final int FOOTER_SIZE = 8;
+    static final int TYPE_HARDWARE = 0;
+    static final int TYPE_SOFTWARE = 1;
+    // Los archivos de ObjectOutputStream empiezan con estos dos bytes
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private ReportCodec() {
+    }
+
+    /**
+     * Revisa si el archivo fue escrito con la serializacion de Java (formato viejo).
+     *
+     * @param file archivo de datos
+     * @return true si hay que migrarlo
+     * @throws IOException si no se puede leer
+     */
+    static boolean isLegacyFile(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(2);
+            while (head.hasRemaining() && ch.read(head) >= 0) {
+                // se sigue leyendo hasta tener los 2 bytes
+            }
+            return head.position() == 2 && (head.getShort(0) & 0xFFFF) == JAVA_SERIALIZATION_MAGIC;
+        }
+    }
+
+    /**
+     * Escribe todos los reportes en el formato binario.
+     *
+     * @param channel canal de destino
+     * @param reports reportes a guardar
+     * @throws IOException si falla la escritura
+     */
+    static void writeSnapshot(WritableByteChannel channel, List<Report> reports) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        String[] ordered = collectDictionary(reports, dictionary);
+
+        Output out = new Output(channel);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(reports.size());
+        out.writeVarInt(ordered.length);
+        for (String s : ordered) {
+            out.writeString(s);
+        }
+        long[] offsets = new long[reports.size()];
+        int i = 0;
+        for (Report r : reports) {
+            offsets[i++] = out.written();
+            writeRecord(out, r, dictionary);
+        }
+        long indexStart = out.written();
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        out.writeLong(indexStart);
+        out.flush();
+    }
+
+    /**
+     * Lee un snapshot completo y entrega cada reporte en orden.
+     *
+     * @param channel canal de origen
+     * @param sink    recibe cada reporte
+     * @return cantidad de reportes leidos
+     * @throws IOException si el archivo no tiene el formato esperado
+     */
+    static long readSnapshot(ReadableByteChannel channel, Consumer<Report> sink) throws IOException {
+        Input in = new Input(channel);
+        readHeader(in);
+        long count = in.readLong();
+        String[] dictionary = readDictionary(in);
+        for (long i = 0; i < count; i++) {
+            sink.accept(readRecord(in, dictionary));
+        }
+        return count;
+    }
+
+    /**
+     * Valida el magic y devuelve la version del snapshot.
+     */
+    static int readHeader(Input in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("El archivo no es un snapshot de reportes");
+        }
+        int version = in.readShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Version de snapshot no soportada: " + version);
+        }
+        return version;
+    }
+
+    static String[] readDictionary(Input in) throws IOException {
+        String[] dictionary = new String[in.readVarInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readString();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Materializa el registro que empieza en la posicion indicada del buffer.
+     * No cambia la posicion del buffer original.
+     */
+    static Report readRecordAt(ByteBuffer buffer, int offset, String[] dictionary) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        return readRecord(new Input(view), dictionary);
+    }
+
+    /**
+     * Codifica un reporte con todos los textos en linea (para el journal).
+     */
+    static byte[] encodeRecord(Report r) throws IOException {
+        Output out = new Output(null);
+        writeRecord(out, r, null);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodifica un registro del journal. Tambien acepta los registros viejos
+     * escritos con la serializacion de Java.
+     */
+    static Report decodeRecord(byte[] data) throws IOException {
+        if (data.length >= 2 && ((data[0] & 0xFF) << 8 | (data[1] & 0xFF)) == JAVA_SERIALIZATION_MAGIC) {
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                return (Report) ois.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Registro de journal invalido: " + e.getMessage(), e);
+            }
+        }
+        return readRecord(new Input(ByteBuffer.wrap(data)), null);
+    }
+
+    private static String[] collectDictionary(List<Report> reports, Map<String, Integer> dictionary) {
+        List<String> ordered = new ArrayList<>();
+        for (Report r : reports) {
+            addToDictionary(r.getEquipmentId(), dictionary, ordered);
+            if (r instanceof HardwareReport) {
+                addToDictionary(((HardwareReport) r).getComponentType(), dictionary, ordered);
+            } else if (r instanceof SoftwareReport) {
+                SoftwareReport sw = (SoftwareReport) r;
+                addToDictionary(sw.getOperatingSystem(), dictionary, ordered);
+                addToDictionary(sw.getSoftwareName(), dictionary, ordered);
+                addToDictionary(sw.getVersion(), dictionary, ordered);
+            }
+        }
+        return ordered.toArray(new String[0]);
+    }
+
+    private static void addToDictionary(String s, Map<String, Integer> dictionary, List<String> ordered) {
+        if (s != null && !dictionary.containsKey(s)) {
+            dictionary.put(s, ordered.size());
+            ordered.add(s);
+        }
+    }
+
+    private static void writeRecord(Output out, Report r, Map<String, Integer> dictionary) throws IOException {
+        if (r instanceof HardwareReport) {
+            out.writeByte(TYPE_HARDWARE);
+        } else if (r instanceof SoftwareReport) {
+            out.writeByte(TYPE_SOFTWARE);
+        } else {
+            throw new IOException("Tipo de reporte no soportado: " + r.getClass().getName());
+        }
+        out.writeByte(r.getSeverity().ordinal());
+        out.writeVarLong(zigzag(r.getReportDate().toEpochDay()));
+        writeShared(out, r.getEquipmentId(), dictionary);
+        out.writeString(r.getDescription());
+        if (r instanceof HardwareReport) {
+            HardwareReport hw = (HardwareReport) r;
+            writeShared(out, hw.getComponentType(), dictionary);
+            out.writeVarInt(hw.getSerialNumber());
+            out.writeByte(hw.isNeedsReplacement() ? 1 : 0);
+        } else {
+            SoftwareReport sw = (SoftwareReport) r;
+            writeShared(out, sw.getOperatingSystem(), dictionary);
+            writeShared(out, sw.getSoftwareName(), dictionary);
+            writeShared(out, sw.getVersion(), dictionary);
+        }
+    }
+
+    private static Report readRecord(Input in, String[] dictionary) throws IOException {
+        int type = in.readByte();
+        int severityOrdinal = in.readByte();
+        if (severityOrdinal < 0 || severityOrdinal >= SEVERITIES.length) {
+            throw new IOException("Severidad invalida en el archivo: " + severityOrdinal);
+        }
+        Severity severity = SEVERITIES[severityOrdinal];
+        LocalDate date = LocalDate.ofEpochDay(unzigzag(in.readVarLong()));
+        String equipmentId = readShared(in, dictionary);
+        String description = in.readString();
+        switch (type) {
+            case TYPE_HARDWARE: {
+                String componentType = readShared(in, dictionary);
+                int serialNumber = in.readVarInt();
+                boolean needsReplacement = in.readByte() != 0;
+                return new HardwareReport(equipmentId, description, severity, date,
+                        componentType, serialNumber, needsReplacement);
+            }
+            case TYPE_SOFTWARE: {
+                String os = readShared(in, dictionary);
+                String softwareName = readShared(in, dictionary);
+                String version = readShared(in, dictionary);
+                return new SoftwareReport(equipmentId, description, severity, date,
+                        os, softwareName, version);
+            }
+            default:
+                throw new IOException("Tipo de registro invalido: " + type);
+        }
+    }
+
+    private static void writeShared(Output out, String s, Map<String, Integer> dictionary) throws IOException {
+        if (dictionary == null) {
+            out.writeString(s);
+        } else {
+            // 0 queda reservado para null
+            out.writeVarInt(s == null ? 0 : dictionary.get(s) + 1);
+        }
+    }
+
+    private static String readShared(Input in, String[] dictionary) throws IOException {
+        if (dictionary == null) {
+            return in.readString();
+        }
+        int index = in.readVarInt();
+        if (index == 0) {
+            return null;
+        }
+        if (index > dictionary.length) {
+            throw new IOException("Indice de diccionario invalido: " + index);
+        }
+        return dictionary[index - 1];
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Buffer de escritura. Si tiene canal, se vacia al canal cuando se llena;
+     * si no, crece en memoria.
+     */
+    static final class Output {
+        private final WritableByteChannel channel;
+        private ByteBuffer buf;
+        // Bytes que ya se mandaron al canal
+        private long flushed;
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+            this.buf = ByteBuffer.allocate(channel == null ? 128 : BUFFER_SIZE);
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() >= n) {
+                return;
+            }
+            if (channel != null) {
+                flush();
+                if (buf.remaining() >= n) {
+                    return;
+                }
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n));
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+
+        void writeByte(int v) throws IOException {
+            ensure(1);
+            buf.put((byte) v);
+        }
+
+        void writeShort(int v) throws IOException {
+            ensure(2);
+            buf.putShort((short) v);
+        }
+
+        void writeInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void writeLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        void writeVarInt(int v) throws IOException {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long v) throws IOException {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        /**
+         * Escribe un texto como [largo + 1 varint][bytes UTF-8]. Largo 0 significa null.
+         */
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensure(bytes.length);
+            buf.put(bytes);
+        }
+
+        void flush() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                flushed += channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        /**
+         * Cantidad total de bytes escritos hasta ahora.
+         */
+        long written() {
+            return flushed + buf.position();
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[buf.position()];
+            System.arraycopy(buf.array(), 0, result, 0, result.length);
+            return result;
+        }
+    }
+
+    /**
+     * Buffer de lectura. Si tiene canal, se rellena a medida que se consume.
+     */
+    static final class Input {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buf;
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buf = ByteBuffer.allocate(BUFFER_SIZE);
+            this.buf.flip();
+        }
+
+        Input(ByteBuffer buffer) {
+            this.channel = null;
+            this.buf = buffer;
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() >= n) {
+                return;
+            }
+            if (channel == null) {
+                throw new EOFException("Registro incompleto");
+            }
+            buf.compact();
+            if (buf.capacity() < n) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, n));
+                buf.flip();
+                bigger.put(buf);
+                buf = bigger;
+            }
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) {
+                    buf.flip();
+                    throw new EOFException("Fin de archivo inesperado");
+                }
+            }
+            buf.flip();
+        }
+
+        int readByte() throws IOException {
+            ensure(1);
+            return buf.get();
+        }
+
+        int readShort() throws IOException {
+            ensure(2);
+            return buf.getShort();
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return buf.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            return buf.getLong();
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!buf.hasRemaining()) {
+                    ensure(1);
+                }
+                byte b = buf.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Varint demasiado largo");
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            ensure(length);
+            String s;
+            if (buf.hasArray()) {
+                s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+                buf.position(buf.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buf.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import model.HardwareReport;
+import model.Report;
+import model.SoftwareReport;
+
+/**
+ * Escribe el informe de texto sin armar la lista completa de reportes.
+ * Recorre el indice por fecha en tramos de CHUNK_ROWS posiciones; cada tramo se formatea
+ * en paralelo a un buffer de bytes y los tramos se escriben en orden por un FileChannel
+ * (o comprimidos con gzip). Como hay a lo sumo unos pocos tramos en vuelo y sus buffers
+ * se reusan, la memoria no depende de cuantos reportes se exportan.
+ *
+ * Cada linea tiene el mismo formato que HardwareReport.toString / SoftwareReport.toString,
+ * en el charset por defecto de la plataforma (el mismo que usaba el FileWriter anterior).
+ */
+final class ReportExporter {
+    private static final int CHUNK_ROWS = 8192;
+    private static final int GZIP_BUFFER = 1 << 16;
+    private static final String SEPARATOR = " - ";
+    private static final String LINE_END = System.lineSeparator();
+
+    private final ReportRows.Snapshot snap;
+    private final PostingList.View byDate;
+    private final boolean hardware;
+    private final int threads;
+    // Buffers libres para reusar entre tramos
+    private final BlockingQueue<ByteBuffer> free;
+    private final ThreadLocal<LineFormatter> formatters = ThreadLocal.withInitial(LineFormatter::new);
+
+    /**
+     * @param snap     foto de los reportes a exportar
+     * @param byDate   indice por fecha; se ignoran las posiciones fuera de la foto
+     * @param hardware true para exportar los de hardware, false para los de software
+     * @param threads  hilos que formatean
+     */
+    ReportExporter(ReportRows.Snapshot snap, PostingList.View byDate, boolean hardware, int threads) {
+        this.snap = snap;
+        this.byDate = byDate;
+        this.hardware = hardware;
+        this.threads = threads;
+        this.free = new ArrayBlockingQueue<>(threads * 2 + 2);
+    }
+
+    /**
+     * Escribe el informe completo en el archivo (lo crea o lo reemplaza).
+     *
+     * @param target archivo de salida
+     * @param gzip   true para comprimir la salida con gzip
+     * @return cantidad de reportes escritos
+     * @throws IOException si falla la escritura
+     */
+    long writeTo(Path target, boolean gzip) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread t = new Thread(task, "report-exporter");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream gz = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), GZIP_BUFFER) : null) {
+            for (int from = 0, n = byDate.size(); from < n; from += CHUNK_ROWS) {
+                final int start = from;
+                final int end = Math.min(n, from + CHUNK_ROWS);
+                pending.add(pool.submit(() -> format(start, end)));
+                if (pending.size() > threads * 2) {
+                    written += write(pending.poll(), channel, gz);
+                }
+            }
+            while (!pending.isEmpty()) {
+                written += write(pending.poll(), channel, gz);
+            }
+            if (gz != null) {
+                gz.flush();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    private int write(Future<Chunk> future, FileChannel channel, OutputStream gz) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportacion interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error al formatear reportes: " + e.getCause().getMessage(), e.getCause());
+        }
+        ByteBuffer bytes = chunk.bytes;
+        if (gz != null) {
+            gz.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        bytes.clear();
+        free.offer(bytes);
+        return chunk.count;
+    }
+
+    /**
+     * Formatea las posiciones [start, end) del indice por fecha a un buffer de bytes.
+     */
+    private Chunk format(int start, int end) {
+        LineFormatter f = formatters.get();
+        f.text.setLength(0);
+        int count = 0;
+        int size = snap.size();
+        for (int k = start; k < end; k++) {
+            int row = byDate.rowAt(k);
+            if (row < size && snap.isHardwareAt(row) == hardware) {
+                f.append(snap.get(row));
+                count++;
+            }
+        }
+        return new Chunk(f.encode(takeBuffer()), count);
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = free.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(0);
+    }
+
+    private static final class Chunk {
+        final ByteBuffer bytes;
+        final int count;
+
+        Chunk(ByteBuffer bytes, int count) {
+            this.bytes = bytes;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Estado que cada hilo reusa entre tramos: el texto, los caracteres y el encoder.
+     */
+    private static final class LineFormatter {
+        final StringBuilder text = new StringBuilder(CHUNK_ROWS * 96);
+        private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final float maxBytesPerChar = encoder.maxBytesPerChar();
+        private char[] chars = new char[0];
+        // Los reportes vienen ordenados por fecha: se reusa el texto de la ultima fecha
+        private LocalDate lastDate;
+        private String lastDateText;
+
+        void append(Report r) {
+            text.append(r.getEquipmentId()).append(SEPARATOR)
+                    .append(r.getDescription()).append(SEPARATOR)
+                    .append(r.getSeverity().toString()).append(SEPARATOR)
+                    .append(dateText(r.getReportDate())).append(SEPARATOR);
+            if (r instanceof HardwareReport) {
+                HardwareReport hw = (HardwareReport) r;
+                text.append(hw.getComponentType()).append(SEPARATOR)
+                        .append(hw.getSerialNumber()).append(SEPARATOR)
+                        .append(hw.isNeedsReplacement() ? "Si" : "No");
+            } else {
+                SoftwareReport sw = (SoftwareReport) r;
+                text.append(sw.getOperatingSystem()).append(SEPARATOR)
+                        .append(sw.getSoftwareName()).append(SEPARATOR)
+                        .append(sw.getVersion());
+            }
+            text.append(LINE_END);
+        }
+
+        private String dateText(LocalDate date) {
+            if (!date.equals(lastDate)) {
+                lastDate = date;
+                lastDateText = date.toString();
+            }
+            return lastDateText;
+        }
+
+        /**
+         * Codifica el texto en el buffer (lo agranda si no alcanza) y lo deja listo para leer.
+         */
+        ByteBuffer encode(ByteBuffer out) {
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            text.getChars(0, length, chars, 0);
+            // En UTF-8 son como mucho 3 bytes por char (los pares sustitutos usan 4 por 2 chars)
+            int needed = (int) Math.ceil(length * (double) maxBytesPerChar);
+            if (out.capacity() < needed) {
+                out = ByteBuffer.allocate(needed);
+            }
+            encoder.reset();
+            CoderResult result = encoder.encode(CharBuffer.wrap(chars, 0, length), out, true);
+            if (!result.isUnderflow()) {
+                throw new IllegalStateException("No se pudo codificar el texto: " + result);
+            }
+            encoder.flush(out);
+            out.flip();
+            return out;
+        }
+    }
+}
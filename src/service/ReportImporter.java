@@ -0,0 +1,531 @@
+package service;
+
+import exceptions.InvalidSerialNumberException;
+import exceptions.InvalidSeverityException;
+import exceptions.InvalidSoftwareVersionException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+
+/**
+ * Importa muchos reportes de una vez desde un archivo CSV o JSON lines.
+ *
+ * Columnas (CSV, con fila de encabezado) o claves (JSON lines, un objeto por linea):
+ * type (Hardware/Software), equipmentId, description, severity, reportDate,
+ * y segun el tipo componentType, serialNumber, needsReplacement
+ * u operatingSystem, softwareName, version.
+ *
+ * El archivo se lee en un solo hilo y se parte en lotes; los lotes se convierten
+ * en reportes en paralelo y se guardan en el orden del archivo, cada uno con una
+ * sola escritura durable (ver ReportManager.addReports).
+ * Las lineas invalidas no detienen la importacion: se juntan en el resultado.
+ */
+public class ReportImporter {
+    private static final int BATCH_SIZE = 10_000;
+    // Cantidad maxima de errores que se guardan con su detalle
+    private static final int MAX_ERRORS = 100;
+
+    // Formato del archivo de entrada
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        /**
+         * Deduce el formato por la extension del archivo.
+         *
+         * @throws IllegalArgumentException si la extension no es .csv, .jsonl, .ndjson o .json
+         */
+        public static Format fromFileName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson") || lower.endsWith(".json")) {
+                return JSON_LINES;
+            }
+            throw new IllegalArgumentException("Formato no soportado. Use .csv o .jsonl");
+        }
+    }
+
+    private final ReportManager manager;
+    private final int threads;
+
+    public ReportImporter(ReportManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param manager donde se guardan los reportes importados
+     * @param threads hilos que convierten lineas en reportes
+     */
+    public ReportImporter(ReportManager manager, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Se necesita al menos un hilo");
+        }
+        this.manager = manager;
+        this.threads = threads;
+    }
+
+    /**
+     * Importa el archivo deduciendo el formato por su extension.
+     */
+    public Result importFile(Path file) throws IOException {
+        return importFile(file, Format.fromFileName(file.getFileName().toString()));
+    }
+
+    /**
+     * Importa todos los reportes validos del archivo.
+     *
+     * @param file   archivo a leer (UTF-8)
+     * @param format formato del archivo
+     * @return cantidad importada y errores por linea
+     * @throws IOException si no se puede leer el archivo o guardar un lote;
+     *                     los lotes anteriores ya quedaron guardados
+     */
+    public Result importFile(Path file, Format format) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(in, format);
+        }
+    }
+
+    /**
+     * Igual que importFile pero leyendo de un Reader ya abierto (por ejemplo el cuerpo
+     * de un pedido HTTP). No cierra el Reader.
+     *
+     * @param in     texto a importar
+     * @param format formato del texto
+     * @return cantidad importada y errores por linea
+     * @throws IOException si no se puede leer o guardar un lote
+     */
+    public Result importFrom(BufferedReader in, Format format) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread t = new Thread(task, "report-importer");
+            t.setDaemon(true);
+            return t;
+        });
+        Result result = new Result();
+        // Lotes en proceso, en el orden del archivo. Se limita para no leer todo a memoria.
+        Deque<Future<Batch>> pending = new ArrayDeque<>();
+        try {
+            Map<String, Integer> header = null;
+            long lineNumber = 0;
+            if (format == Format.CSV) {
+                String first = in.readLine();
+                lineNumber++;
+                if (first == null) {
+                    return result;
+                }
+                header = parseHeader(first);
+            }
+            List<String> lines = new ArrayList<>(BATCH_SIZE);
+            long firstLine = lineNumber + 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                lines.add(line);
+                if (lines.size() == BATCH_SIZE) {
+                    pending.add(pool.submit(parseTask(format, header, lines, firstLine)));
+                    lines = new ArrayList<>(BATCH_SIZE);
+                    firstLine = lineNumber + 1;
+                    if (pending.size() > threads * 2) {
+                        commit(pending.poll(), result);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(pool.submit(parseTask(format, header, lines, firstLine)));
+            }
+            while (!pending.isEmpty()) {
+                commit(pending.poll(), result);
+            }
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void commit(Future<Batch> future, Result result) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importacion interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error al procesar un lote: " + e.getCause().getMessage(), e.getCause());
+        }
+        manager.addReports(batch.reports);
+        result.imported += batch.reports.size();
+        for (LineError error : batch.errors) {
+            result.addError(error);
+        }
+    }
+
+    private Callable<Batch> parseTask(Format format, Map<String, Integer> header, List<String> lines, long firstLine) {
+        return () -> {
+            Batch batch = new Batch(lines.size());
+            long lineNumber = firstLine;
+            for (String line : lines) {
+                if (!line.isBlank()) {
+                    try {
+                        Map<String, String> fields = format == Format.CSV
+                                ? csvFields(header, line)
+                                : parseJsonObject(line);
+                        batch.reports.add(toReport(fields));
+                    } catch (InvalidSeverityException | InvalidSerialNumberException
+                             | InvalidSoftwareVersionException | IllegalArgumentException ex) {
+                        batch.errors.add(new LineError(lineNumber, ex.getMessage()));
+                    } catch (DateTimeParseException ex) {
+                        batch.errors.add(new LineError(lineNumber, "Fecha invalida. Use YYYY-MM-DD."));
+                    }
+                }
+                lineNumber++;
+            }
+            return batch;
+        };
+    }
+
+    /**
+     * Crea el reporte validando los campos igual que el menu de la consola.
+     */
+    private Report toReport(Map<String, String> f)
+            throws InvalidSeverityException, InvalidSerialNumberException, InvalidSoftwareVersionException {
+        String type = required(f, "type");
+        String equipmentId = required(f, "equipmentId");
+        String description = optional(f, "description");
+        Severity severity = InputParser.parseSeverity(required(f, "severity"));
+        LocalDate date = InputParser.parseDate(required(f, "reportDate"));
+        switch (type.toLowerCase(Locale.ROOT)) {
+            case "hardware": {
+                int serialNumber = InputParser.parseSerialNumber(required(f, "serialNumber"));
+                return new HardwareReport(equipmentId, description, severity, date,
+                        optional(f, "componentType"), serialNumber, parseYesNo(optional(f, "needsReplacement")));
+            }
+            case "software": {
+                String version = required(f, "version");
+                manager.validateSoftwareVersion(version);
+                return new SoftwareReport(equipmentId, description, severity, date,
+                        optional(f, "operatingSystem"), optional(f, "softwareName"), version);
+            }
+            default:
+                throw new IllegalArgumentException("Tipo invalido: " + type + ". Use Hardware/Software");
+        }
+    }
+
+    private static String required(Map<String, String> f, String name) {
+        String value = f.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Falta el campo " + name);
+        }
+        return value.trim();
+    }
+
+    private static String optional(Map<String, String> f, String name) {
+        String value = f.get(name);
+        return value == null ? "" : value.trim();
+    }
+
+    private static boolean parseYesNo(String input) {
+        switch (input.toLowerCase(Locale.ROOT)) {
+            case "si":
+            case "s":
+            case "true":
+            case "yes":
+            case "1":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // CSV
+
+    private static Map<String, Integer> parseHeader(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            if (i == 0 && name.startsWith("\uFEFF")) {
+                name = name.substring(1);
+            }
+            header.put(name, i);
+        }
+        if (!header.containsKey("type")) {
+            throw new IllegalArgumentException("El CSV no tiene la columna type en el encabezado");
+        }
+        return header;
+    }
+
+    private static Map<String, String> csvFields(Map<String, Integer> header, String line) {
+        List<String> values = splitCsv(line);
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, Integer> column : header.entrySet()) {
+            int i = column.getValue();
+            if (i < values.size()) {
+                fields.put(column.getKey(), values.get(i));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Separa una linea CSV por comas. Acepta campos entre comillas con "" como comilla escapada.
+     * Cada registro ocupa una sola linea.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        values.add(sb.toString());
+        return values;
+    }
+
+    // JSON lines
+
+    /**
+     * Lee un objeto JSON plano: claves de texto y valores de texto, numero, booleano o null.
+     */
+    static Map<String, String> parseJsonObject(String line) {
+        JsonCursor c = new JsonCursor(line);
+        Map<String, String> fields = new HashMap<>();
+        c.expect('{');
+        if (!c.tryConsume('}')) {
+            do {
+                String key = c.readString();
+                c.expect(':');
+                fields.put(key, c.readValue());
+            } while (c.tryConsume(','));
+            c.expect('}');
+        }
+        c.expectEnd();
+        return fields;
+    }
+
+    private static final class JsonCursor {
+        private final String text;
+        private int pos;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        void expect(char ch) {
+            if (!tryConsume(ch)) {
+                throw error("se esperaba '" + ch + "'");
+            }
+        }
+
+        boolean tryConsume(char ch) {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == ch) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectEnd() {
+            skipSpaces();
+            if (pos != text.length()) {
+                throw error("texto de mas despues del objeto");
+            }
+        }
+
+        String readValue() {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == '"') {
+                return readString();
+            }
+            int start = pos;
+            while (pos < text.length() && ",} \t".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty() || literal.equals("{") || literal.startsWith("[")) {
+                throw error("valor invalido");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        String readString() {
+            skipSpaces();
+            if (pos >= text.length() || text.charAt(pos) != '"') {
+                throw error("se esperaba un texto");
+            }
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char ch = text.charAt(pos++);
+                if (ch == '"') {
+                    return sb.toString();
+                }
+                if (ch != '\\') {
+                    sb.append(ch);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char esc = text.charAt(pos++);
+                switch (esc) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("escape \\u incompleto");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException nfe) {
+                            throw error("escape \\u invalido");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        sb.append(esc);
+                }
+            }
+            throw error("texto sin cerrar");
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("JSON invalido en la columna " + (pos + 1) + ": " + message);
+        }
+    }
+
+    // Resultados
+
+    private static final class Batch {
+        final List<Report> reports;
+        final List<LineError> errors = new ArrayList<>();
+
+        Batch(int capacity) {
+            reports = new ArrayList<>(capacity);
+        }
+    }
+
+    /**
+     * Error de una linea del archivo.
+     */
+    public static final class LineError {
+        private final long line;
+        private final String message;
+
+        LineError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Linea " + line + ": " + message;
+        }
+    }
+
+    /**
+     * Resultado de una importacion.
+     */
+    public static final class Result {
+        private long imported;
+        private long failed;
+        private final List<LineError> errors = new ArrayList<>();
+
+        private void addError(LineError error) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * @return cantidad total de lineas rechazadas
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return detalle de los primeros errores (como maximo 100)
+         */
+        public List<LineError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+
+/**
+ * Los tres indices juntos: por equipo, por fecha (primario) y por severidad,
+ * mas los contadores de ReportAggregates, que se mantienen en los mismos puntos.
+ * Los indices de texto (descripcion y componentType/softwareName) se construyen recien
+ * en la primera busqueda de texto (buildText) y desde ahi se mantienen igual que los demas;
+ * lo mismo el de versiones de software (buildVersions) con la primera consulta por version.
+ * Los escribe un solo hilo y se leen sin locks; cada lector descarta las posiciones
+ * que no estan en su ReportRows.Snapshot, asi ve los indices tal como estaban en esa foto.
+ */
+final class ReportIndexes {
+    final EquipmentIndex equipment = new EquipmentIndex();
+    final PostingList byDate = new PostingList();
+    final SeverityIndex severity = new SeverityIndex();
+    final ReportAggregates aggregates = new ReportAggregates();
+    // null hasta la primera busqueda de texto
+    volatile TextIndex descriptionText;
+    volatile TextIndex detailText;
+    // null hasta la primera consulta por rango de versiones
+    volatile VersionIndex versions;
+
+    /**
+     * Construye los indices recorriendo todos los reportes de la foto.
+     */
+    static ReportIndexes build(ReportRows.Snapshot rows) {
+        ReportIndexes indexes = new ReportIndexes();
+        for (int i = 0, n = rows.size(); i < n; i++) {
+            long day = rows.epochDayAt(i);
+            indexes.equipment.append(rows.equipmentIdAt(i), day, i);
+            indexes.byDate.append(day, i);
+            indexes.severity.append(rows.severityAt(i), day, i);
+            boolean hardware = rows.isHardwareAt(i);
+            indexes.aggregates.add(rows.equipmentIdAt(i), rows.severityAt(i), day, hardware,
+                    hardware ? rows.componentTypeAt(i) : null, hardware && rows.needsReplacementAt(i));
+        }
+        indexes.equipment.sortAll();
+        indexes.byDate.sort();
+        indexes.severity.sortAll();
+        return indexes;
+    }
+
+    /**
+     * Construye los indices de texto recorriendo la foto. Lo llama el escritor (con el lock
+     * de ReportManager), asi ningun reporte nuevo se agrega mientras tanto.
+     */
+    void buildText(ReportRows.Snapshot rows) {
+        TextIndex description = new TextIndex();
+        TextIndex detail = new TextIndex();
+        for (int i = 0, n = rows.size(); i < n; i++) {
+            Report r = rows.get(i);
+            long day = rows.epochDayAt(i);
+            description.append(r.getDescription(), day, i);
+            detail.append(TextQuery.detailText(r), day, i);
+        }
+        description.sortAll();
+        detail.sortAll();
+        detailText = detail;
+        descriptionText = description;
+    }
+
+    /**
+     * Construye el indice de versiones con los reportes de software de la foto.
+     * Igual que buildText, lo llama el escritor.
+     */
+    void buildVersions(ReportRows.Snapshot rows) {
+        VersionIndex index = new VersionIndex();
+        for (int i = 0, n = rows.size(); i < n; i++) {
+            if (!rows.isHardwareAt(i)) {
+                SoftwareReport sw = (SoftwareReport) rows.get(i);
+                index.append(sw.getSoftwareName(), sw.getPackedVersion(), rows.epochDayAt(i), i);
+            }
+        }
+        index.sortAll();
+        versions = index;
+    }
+
+    /**
+     * Agrega un reporte nuevo. Solo lo llama el escritor, antes de publicar la fila.
+     */
+    void add(Report r, int row) {
+        long day = r.getReportDate().toEpochDay();
+        equipment.add(r.getEquipmentId(), day, row);
+        byDate.add(day, row);
+        severity.add(r.getSeverity(), day, row);
+        count(r, day);
+        addText(r, day, row);
+        addVersion(r, day, row);
+    }
+
+    private void addText(Report r, long day, int row) {
+        TextIndex description = descriptionText;
+        if (description != null) {
+            description.add(r.getDescription(), day, row);
+            detailText.add(TextQuery.detailText(r), day, row);
+        }
+    }
+
+    private void addVersion(Report r, long day, int row) {
+        VersionIndex index = versions;
+        if (index != null && r instanceof SoftwareReport) {
+            SoftwareReport sw = (SoftwareReport) r;
+            index.add(sw.getSoftwareName(), sw.getPackedVersion(), day, row);
+        }
+    }
+
+    private void count(Report r, long day) {
+        if (r instanceof HardwareReport) {
+            HardwareReport hw = (HardwareReport) r;
+            aggregates.add(r.getEquipmentId(), r.getSeverity(), day, true, hw.getComponentType(), hw.isNeedsReplacement());
+        } else {
+            aggregates.add(r.getEquipmentId(), r.getSeverity(), day, false, null, false);
+        }
+    }
+
+    /**
+     * Agrega un lote de reportes nuevos que ocupan posiciones seguidas desde firstRow.
+     * Cada lista de posiciones recibe todas sus claves de una vez (ver PostingList.addAll).
+     * Solo lo llama el escritor, antes de publicar las filas.
+     */
+    void addAll(List<? extends Report> batch, int firstRow) {
+        KeyBuffer dates = new KeyBuffer(batch.size());
+        Map<String, KeyBuffer> byEquipment = new HashMap<>();
+        KeyBuffer[] bySeverity = new KeyBuffer[Severity.values().length];
+        int row = firstRow;
+        for (Report r : batch) {
+            long key = PostingList.key(r.getReportDate().toEpochDay(), row);
+            dates.add(key);
+            byEquipment.computeIfAbsent(EquipmentIndex.fold(r.getEquipmentId()), k -> new KeyBuffer(16)).add(key);
+            int s = r.getSeverity().ordinal();
+            if (bySeverity[s] == null) {
+                bySeverity[s] = new KeyBuffer(batch.size());
+            }
+            bySeverity[s].add(key);
+            severity.mark(r.getSeverity(), row);
+            count(r, r.getReportDate().toEpochDay());
+            addText(r, r.getReportDate().toEpochDay(), row);
+            addVersion(r, r.getReportDate().toEpochDay(), row);
+            row++;
+        }
+        byDate.addAll(dates.keys, dates.size);
+        for (Map.Entry<String, KeyBuffer> e : byEquipment.entrySet()) {
+            equipment.addAll(e.getKey(), e.getValue().keys, e.getValue().size);
+        }
+        for (int s = 0; s < bySeverity.length; s++) {
+            if (bySeverity[s] != null) {
+                severity.addAll(s, bySeverity[s].keys, bySeverity[s].size);
+            }
+        }
+    }
+
+    private static final class KeyBuffer {
+        long[] keys;
+        int size;
+
+        KeyBuffer(int capacity) {
+            keys = new long[capacity];
+        }
+
+        void add(long key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = key;
+        }
+    }
+}
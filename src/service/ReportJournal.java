@@ -0,0 +1,326 @@
+package service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import model.Report;
+
+/**
+ * Journal de solo-agregado con los reportes nuevos que todavia no estan en el snapshot.
+ * Cada registro tiene el formato [longitud int][secuencia long][crc32 int][datos],
+ * donde la secuencia es la posicion del reporte en la lista completa
+ * y los datos son el registro de ReportCodec con los textos en linea.
+ * El journal se parte en segmentos y cada segmento se llama con la secuencia
+ * del primer registro que contiene: databaseReports.<secuencia>.journal
+ *
+ * Si una escritura o un fsync falla, el journal rechaza los registros siguientes hasta
+ * que un snapshot cubra todo lo anterior (ver deleteSegmentsBefore): al leerlo, un hueco
+ * corta todo lo que viene despues, asi que seguir escribiendo perderia esos reportes.
+ * Los llamadores toman el lock del journal para escribir, igual que para rotar.
+ */
+class ReportJournal implements Closeable {
+    private static final String PREFIX = "databaseReports.";
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_SIZE = 16;
+
+    private final Path folder;
+    // Segmento activo, donde se agregan los registros nuevos
+    private FileChannel channel;
+    // Error que bloquea las escrituras, o null; se lee sin el lock en hasFailed()
+    private volatile IOException failure;
+    // True si fallo o se rechazo algun registro desde el ultimo rotate()
+    private boolean failedSinceRotate;
+
+    /**
+     * @param folder carpeta donde viven los segmentos del journal
+     */
+    ReportJournal(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Lee todos los segmentos en orden y entrega los reportes cuya secuencia
+     * todavia no esta en el snapshot. Si el ultimo registro de un segmento quedo
+     * incompleto o corrupto (por ejemplo, por un corte de luz), se corta el segmento ahi.
+     *
+     * @param nextSeq secuencia del primer reporte que falta (tamaño del snapshot)
+     * @param sink    recibe cada reporte recuperado, en orden
+     * @return la secuencia siguiente despues de recuperar todo
+     * @throws IOException si no se puede leer algun segmento
+     */
+    long replay(long nextSeq, Consumer<Report> sink) throws IOException {
+        for (Path segment : listSegments()) {
+            nextSeq = replaySegment(segment, nextSeq, sink);
+        }
+        return nextSeq;
+    }
+
+    private long replaySegment(Path segment, long nextSeq, Consumer<Report> sink) throws IOException {
+        long validBytes = 0;
+        boolean torn = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                byte[] data;
+                long seq;
+                int crc;
+                try {
+                    seq = in.readLong();
+                    crc = in.readInt();
+                    if (length < 0) {
+                        torn = true;
+                        break;
+                    }
+                    data = new byte[length];
+                    in.readFully(data);
+                } catch (EOFException eof) {
+                    torn = true;
+                    break;
+                }
+                if (checksum(data) != crc) {
+                    torn = true;
+                    break;
+                }
+                validBytes += HEADER_SIZE + length;
+                if (seq < nextSeq) {
+                    // Ya esta incluido en el snapshot
+                    continue;
+                }
+                if (seq > nextSeq) {
+                    System.err.println("Journal con huecos en " + segment.getFileName() + ", se ignora desde la secuencia " + seq);
+                    break;
+                }
+                sink.accept(decode(data));
+                nextSeq++;
+            }
+        }
+        if (torn) {
+            System.err.println("Registro incompleto en " + segment.getFileName() + ", se descarta el final");
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                ch.truncate(validBytes);
+            }
+        }
+        return nextSeq;
+    }
+
+    /**
+     * Abre (o crea) el segmento que empieza en la secuencia indicada
+     * y deja de escribir en el segmento anterior.
+     *
+     * @param startSeq secuencia del primer registro que tendra el segmento
+     * @throws IOException si no se puede abrir el archivo
+     */
+    void rotate(long startSeq) throws IOException {
+        closeChannel();
+        if (failure != null) {
+            // Lo que haya en un segmento que empieza en startSeq es de escrituras que fallaron
+            channel = FileChannel.open(segmentPath(startSeq), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            channel = FileChannel.open(segmentPath(startSeq),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        failedSinceRotate = false;
+    }
+
+    /**
+     * Agrega un reporte al final del segmento activo. No hace fsync (ver force()).
+     * Es O(1): no depende de cuantos reportes ya existen.
+     *
+     * @param seq posicion del reporte en la lista completa
+     * @param r   reporte a guardar
+     * @throws IOException si falla la escritura
+     */
+    void append(long seq, Report r) throws IOException {
+        checkUsable();
+        byte[] data = encode(r);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length);
+        putRecord(buffer, seq, data);
+        write(buffer);
+    }
+
+    /**
+     * Agrega varios reportes seguidos con una sola escritura. No hace fsync (ver force()).
+     *
+     * @param firstSeq posicion del primer reporte en la lista completa
+     * @param batch    reportes a guardar, en orden
+     * @throws IOException si falla la escritura
+     */
+    void appendAll(long firstSeq, List<? extends Report> batch) throws IOException {
+        checkUsable();
+        List<byte[]> encoded = new ArrayList<>(batch.size());
+        int total = 0;
+        for (Report r : batch) {
+            byte[] data = encode(r);
+            encoded.add(data);
+            total += HEADER_SIZE + data.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        long seq = firstSeq;
+        for (byte[] data : encoded) {
+            putRecord(buffer, seq++, data);
+        }
+        write(buffer);
+    }
+
+    /**
+     * Baja a disco (fsync) lo escrito en el segmento activo.
+     *
+     * @throws IOException si falla el fsync
+     */
+    void force() throws IOException {
+        checkUsable();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            // No se sabe que parte de lo escrito llego al disco
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return true si las escrituras estan bloqueadas por un error (ver deleteSegmentsBefore)
+     */
+    boolean hasFailed() {
+        return failure != null;
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            failedSinceRotate = true;
+            throw new IOException("El journal no acepta escrituras desde un error anterior ("
+                    + failure.getMessage() + "); se vuelve a usar despues del proximo snapshot", failure);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        failedSinceRotate = true;
+    }
+
+    private static void putRecord(ByteBuffer buffer, long seq, byte[] data) {
+        buffer.putInt(data.length);
+        buffer.putLong(seq);
+        buffer.putInt(checksum(data));
+        buffer.put(data);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Borra los segmentos que ya quedaron cubiertos por un snapshot.
+     * Solo se llama despues de que el snapshot esta completo en disco. Si las escrituras
+     * estaban bloqueadas y no fallo nada desde que la compactacion roto el journal,
+     * se desbloquean: el hueco quedo dentro del snapshot y sus segmentos se borran.
+     *
+     * @param startSeq secuencia del segmento activo al momento de la compactacion
+     */
+    void deleteSegmentsBefore(long startSeq) {
+        synchronized (this) {
+            if (failure != null && !failedSinceRotate) {
+                failure = null;
+            }
+        }
+        try {
+            for (Path segment : listSegments()) {
+                if (segmentStart(segment) < startSeq) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al borrar segmentos del journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return la secuencia con la que empieza el primer segmento, o -1 si no hay segmentos
+     * @throws IOException si no se puede listar la carpeta
+     */
+    long firstSegmentStart() throws IOException {
+        List<Path> segments = listSegments();
+        return segments.isEmpty() ? -1 : segmentStart(segments.get(0));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private Path segmentPath(long startSeq) {
+        return folder.resolve(PREFIX + startSeq + SUFFIX);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(folder, PREFIX + "*" + SUFFIX)) {
+            for (Path p : dir) {
+                if (segmentStart(p) >= 0) {
+                    segments.add(p);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(ReportJournal::segmentStart));
+        return segments;
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Report r) throws IOException {
+        return ReportCodec.encodeRecord(r);
+    }
+
+    private static Report decode(byte[] data) throws IOException {
+        return ReportCodec.decodeRecord(data);
+    }
+}
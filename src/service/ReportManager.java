@@ -5,87 +5,373 @@ import exceptions.InvalidSeverityException;
 import exceptions.InvalidSoftwareVersionException;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import model.HardwareReport;
 import model.Report;
 import model.Severity;
-import model.SoftwareReport;
+import model.SoftwareVersion;
 
 /**
  * Clase que maneja la lista de reportes:
- * - Carga y guarda en disco 
- * - Consultas por id, severidad o fecha
+ * - Carga y guarda los reportes a traves de un ReportStore (memoria, journal o archivo mapeado)
+ * - Consultas por id, severidad o fecha, iguales con cualquier store
+ * - Es segura entre hilos: un escritor a la vez y lectores sin locks sobre fotos inmutables
  * - La generacion de archivos de texto (txt)
  */
 public class ReportManager {
     private static final String DATA_FOLDER = "data";
-    private static final String DATA_FILE = DATA_FOLDER + File.separator + "databaseReports.dat";
     private static final String REPORTS_FOLDER = "reports";
+    // Propiedad del sistema para elegir el modo de almacenamiento (memory, heap, mapped, columnar o partitioned)
+    private static final String STORAGE_PROPERTY = "reports.storage";
+    // Propiedad del sistema para elegir la durabilidad (none, batched o per_write)
+    private static final String DURABILITY_PROPERTY = "reports.durability";
+    // Propiedades del sistema para el tamaño de la cache de consultas (0 entradas la desactiva)
+    private static final String CACHE_ENTRIES_PROPERTY = "reports.queryCache.entries";
+    private static final String CACHE_REPORTS_PROPERTY = "reports.queryCache.reports";
 
-    // Lista de todos los reportes
-    private List<Report> reports;
+    /**
+     * Donde viven los reportes mientras el programa corre (cada modo usa un ReportStore distinto).
+     * MEMORY: solo en memoria, no se guarda nada en disco.
+     * HEAP: se cargan todos los Report en memoria al arrancar; se guardan en snapshot + journal.
+     * MAPPED: se mapea el snapshot y cada Report se crea solo cuando una consulta lo usa.
+     * COLUMNAR: se cargan en memoria por columnas (ver ColumnarReportStore); ocupa varias veces
+     * menos memoria que HEAP y cada Report se crea solo cuando una consulta lo usa.
+     * PARTITIONED: como HEAP, pero en disco hay un archivo por mes (ver PartitionedReportStore):
+     * guardar solo reescribe los meses con reportes nuevos y los meses viejos se comprimen
+     * y se pueden archivar con la politica de retencion.
+     */
+    public enum StorageMode {
+        MEMORY,
+        HEAP,
+        MAPPED,
+        COLUMNAR,
+        PARTITIONED
+    }
+
+    /**
+     * Cuando se considera guardado un reporte agregado con addReport / addReportAsync.
+     * NONE: se escribe en el journal en segundo plano sin fsync; un corte de luz puede perderlo.
+     * BATCHED: se junta con los reportes de los proximos milisegundos y se baja a disco
+     * con un solo fsync por lote (group commit).
+     * PER_WRITE: se escribe y se baja a disco antes de que addReport vuelva.
+     * addReports siempre espera a que el lote quede en disco.
+     */
+    public enum Durability {
+        NONE,
+        BATCHED,
+        PER_WRITE
+    }
+
+    // Carpeta de informes, relativa a la carpeta base
+    private final Path reportsFolder;
+    // Donde se cargan y guardan los reportes
+    private final ReportStore store;
+    // Todos los reportes; los lectores trabajan sobre fotos inmutables (rows.snapshot())
+    private ReportRows rows;
+    // Indices por equipo, fecha y severidad; null hasta que se construyen
+    private volatile ReportIndexes indexes;
+    // Resultados de consultas repetidas; se invalidan al agregar reportes que los cambian
+    private final QueryCache cache;
+    // Cantidad y latencia de cada operacion
+    private final ReportMetrics metrics = new ReportMetrics();
 
     /**
      * Se crea carpeta data si hace falta,
-     * luego intenta cargar la lista desde el archivo.
+     * luego intenta cargar la lista desde el snapshot y el journal.
+     * El modo de almacenamiento se toma de la propiedad reports.storage (por defecto heap)
+     * y la durabilidad de reports.durability (por defecto batched).
+     * La cache de consultas guarda hasta reports.queryCache.entries consultas (por defecto 256)
+     * y reports.queryCache.reports reportes entre todas (por defecto 200000).
      */
     public ReportManager() {
-        reports = new ArrayList<>();
-        try {
-            Files.createDirectories(Paths.get(DATA_FOLDER));
-        } catch (IOException e) {
-            System.err.println("Error al crear carpeta data: " + e.getMessage());
+        this(StorageMode.valueOf(System.getProperty(STORAGE_PROPERTY, "heap").trim().toUpperCase()));
+    }
+
+    /**
+     * Igual que el constructor por defecto pero con el modo de almacenamiento indicado.
+     *
+     * @param storageMode MEMORY, HEAP, MAPPED, COLUMNAR o PARTITIONED
+     */
+    public ReportManager(StorageMode storageMode) {
+        this(Paths.get(""), storageMode);
+    }
+
+    /**
+     * Igual que ReportManager(storageMode) pero con las carpetas data y reports
+     * dentro de baseFolder en vez de la carpeta actual.
+     *
+     * @param baseFolder  carpeta donde se crean data/ y reports/
+     * @param storageMode MEMORY, HEAP, MAPPED, COLUMNAR o PARTITIONED
+     */
+    public ReportManager(Path baseFolder, StorageMode storageMode) {
+        this(baseFolder, storageMode,
+                Durability.valueOf(System.getProperty(DURABILITY_PROPERTY, "batched").trim().toUpperCase()));
+    }
+
+    /**
+     * Igual que ReportManager(baseFolder, storageMode) pero con la durabilidad indicada.
+     *
+     * @param baseFolder  carpeta donde se crean data/ y reports/
+     * @param storageMode MEMORY, HEAP, MAPPED, COLUMNAR o PARTITIONED
+     * @param durability  NONE, BATCHED o PER_WRITE
+     */
+    public ReportManager(Path baseFolder, StorageMode storageMode, Durability durability) {
+        this(baseFolder, ReportStore.create(storageMode, durability, baseFolder.resolve(DATA_FOLDER)));
+    }
+
+    /**
+     * Usa el store indicado para cargar y guardar los reportes.
+     *
+     * @param baseFolder carpeta donde se crea reports/
+     * @param store      donde viven los reportes
+     */
+    ReportManager(Path baseFolder, ReportStore store) {
+        this.reportsFolder = baseFolder.resolve(REPORTS_FOLDER);
+        this.store = store;
+        this.cache = new QueryCache(Integer.getInteger(CACHE_ENTRIES_PROPERTY, 256),
+                Integer.getInteger(CACHE_REPORTS_PROPERTY, 200_000));
+        long start = System.nanoTime();
+        loadReports();
+        metrics.record(ReportMetrics.Operation.LOAD, start);
+    }
+
+    /**
+     * Carga los reportes del store. Si el store los lee del archivo a medida que se usan
+     * (modo MAPPED), los indices se construyen en la primera consulta, para no recorrer
+     * el archivo al arrancar.
+     */
+    private void loadReports() {
+        rows = store.load();
+        if (!store.readsInPlace()) {
+            ensureIndexes();
         }
-        loadReportsFromDisk();
     }
 
     /**
-     * Deserializa la lista de reportes desde el archivo data o dataBase
-     * Si no existe, deja la lista vacia y se le asigna "uncheked".
+     * Devuelve los indices, construyendolos la primera vez.
      */
-    @SuppressWarnings("unchecked")
-    private void loadReportsFromDisk() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return;
+    private ReportIndexes ensureIndexes() {
+        ReportIndexes current = indexes;
+        if (current != null) {
+            return current;
         }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            Object obj = ois.readObject();
-            if (obj instanceof List) {
-                this.reports = (List<Report>) obj;
+        synchronized (this) {
+            if (indexes == null) {
+                indexes = ReportIndexes.build(rows.snapshot());
             }
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error al cargar reportes: " + e.getMessage());
+            return indexes;
         }
     }
 
     /**
-     * Serializa la lista completa de reportes y la guarda en data/dataBase
-     * Se llama cada vez que se agrega o genere un nuevo reporte.
+     * Devuelve los indices con los de texto ya construidos. Los de texto se arman recien
+     * en la primera busqueda de texto; hasta entonces no ocupan memoria.
      */
-    private void saveReportsToDisk() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(this.reports);
-        } catch (IOException e) {
-            System.err.println("Error al guardar reportes: " + e.getMessage());
+    private ReportIndexes ensureTextIndex() {
+        ReportIndexes current = ensureIndexes();
+        if (current.descriptionText != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (current.descriptionText == null) {
+                current.buildText(rows.snapshot());
+            }
+            return current;
         }
     }
 
     /**
-     * Agrega un reporte a la lista y guarda en el disco.
+     * Igual que ensureTextIndex, para el indice de versiones de software.
+     */
+    private ReportIndexes ensureVersionIndex() {
+        ReportIndexes current = ensureIndexes();
+        if (current.versions != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (current.versions == null) {
+                current.buildVersions(rows.snapshot());
+            }
+            return current;
+        }
+    }
+
+    private ReportIndexes indexesFor(ReportQuery q) {
+        if (q.getText() != null) {
+            ensureTextIndex();
+        }
+        if (q.hasVersionRange()) {
+            ensureVersionIndex();
+        }
+        return ensureIndexes();
+    }
+
+    /**
+     * Agrega un reporte a la lista y lo guarda en el store (en disco, al final del journal).
+     * No espera a que quede en disco salvo con durabilidad PER_WRITE; los errores de escritura
+     * se informan por consola. Para saber cuando quedo guardado, usar addReportAsync.
      * @param r Reporte (puede ser HardwareReport o SoftwareReport)
      */
     public void addReport(Report r) {
-        this.reports.add(r);
-        saveReportsToDisk();
+        addReportAsync(r).whenComplete((ignored, e) -> {
+            if (e != null) {
+                System.err.println("Error al guardar reportes: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Agrega un reporte a la lista y lo guarda en el store.
+     * El reporte queda visible para las consultas al volver, aunque todavia no este en disco.
+     * No reescribe el archivo completo; eso lo hace la compactacion en segundo plano.
+     * Los escritores pasan de a uno (el metodo es synchronized); los lectores no se bloquean:
+     * el reporte y sus entradas en los indices se hacen visibles juntos al publicar la fila.
+     *
+     * @param r Reporte (puede ser HardwareReport o SoftwareReport)
+     * @return se completa cuando el reporte quedo guardado segun la durabilidad elegida,
+     *         o con la IOException si fallo la escritura
+     * @throws IllegalArgumentException si la fecha del reporte esta fuera del rango aceptado
+     *                                  (ver InputParser.MIN_DATE); no se agrega nada
+     */
+    public synchronized CompletableFuture<Void> addReportAsync(Report r) {
+        long start = System.nanoTime();
+        checkDate(r, ReportMetrics.Operation.ADD_REPORT);
+        int seq = rows.append(r);
+        ReportIndexes current = indexes;
+        if (current != null) {
+            current.add(r, seq);
+        }
+        rows.publish();
+        cache.invalidate(Collections.singletonList(r));
+        CompletableFuture<Void> saved = store.append(seq, r);
+        store.published(1);
+        metrics.record(ReportMetrics.Operation.ADD_REPORT, start);
+        saved.whenComplete((ignored, e) -> {
+            if (e == null) {
+                metrics.record(ReportMetrics.Operation.SAVE, start);
+            } else {
+                metrics.error(ReportMetrics.Operation.SAVE);
+            }
+        });
+        return saved;
+    }
+
+    /**
+     * Agrega un lote de reportes con una sola escritura durable (un fsync) al journal
+     * y vuelve cuando el lote quedo en disco. Los lectores ven el lote completo de una vez.
+     * Con el lock tomado solo se agregan las filas y se encola la escritura; la espera
+     * del fsync es afuera, asi los demas escritores no quedan esperando detras del lote.
+     *
+     * @param batch reportes a agregar, en orden
+     * @throws IOException si no se pudo escribir el journal; el lote ya esta en memoria
+     *                     y se guarda con el proximo snapshot (ver ReportJournal)
+     * @throws IllegalArgumentException si algun reporte tiene la fecha fuera del rango aceptado;
+     *                                  no se agrega ninguno
+     */
+    public void addReports(List<? extends Report> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Void> saved;
+        synchronized (this) {
+            for (Report r : batch) {
+                checkDate(r, ReportMetrics.Operation.ADD_REPORTS);
+            }
+            int firstRow = -1;
+            for (Report r : batch) {
+                int seq = rows.append(r);
+                if (firstRow < 0) {
+                    firstRow = seq;
+                }
+            }
+            ReportIndexes current = indexes;
+            if (current != null) {
+                current.addAll(batch, firstRow);
+            }
+            rows.publish();
+            cache.invalidate(batch);
+            saved = store.appendAll(firstRow, batch);
+            store.published(batch.size());
+        }
+        try {
+            saved.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.error(ReportMetrics.Operation.ADD_REPORTS);
+            throw new IOException("Escritura interrumpida", e);
+        } catch (ExecutionException e) {
+            metrics.error(ReportMetrics.Operation.ADD_REPORTS);
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException("Error al escribir el journal: " + e.getCause().getMessage(), e.getCause());
+        }
+        metrics.record(ReportMetrics.Operation.ADD_REPORTS, start);
+    }
+
+    /**
+     * Revisa la fecha antes de tocar las filas, los indices o el store: una fecha que los
+     * indices no pueden guardar dejaria una fila agregada a medias.
+     */
+    private void checkDate(Report r, ReportMetrics.Operation op) {
+        if (!InputParser.isSupportedDate(r.getReportDate())) {
+            metrics.error(op);
+            throw new IllegalArgumentException("Fecha del reporte fuera de rango: " + r.getReportDate()
+                    + ". Use fechas entre " + InputParser.MIN_DATE + " y " + InputParser.MAX_DATE);
+        }
+    }
+
+    /**
+     * Espera a que el store termine de guardar y cierra sus archivos.
+     * Se llama al salir del programa.
+     */
+    public void close() {
+        store.close();
+        metrics.unregisterMBeans();
+    }
+
+    /**
+     * Cantidad de llamadas, errores y latencias de carga, ingreso, guardado, consultas
+     * e informes (ver ReportMetrics). Para verlas por JMX, llamar a registerMBeans().
+     */
+    public ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Arma la lista de reportes para un rango [desde, hasta) de un indice.
+     * Las posiciones que no estan en la foto del lector se saltan.
+     */
+    private static List<Report> materialize(ReportRows.Snapshot snap, PostingList.View index, int from, int to) {
+        List<Report> found = new ArrayList<>(Math.max(0, to - from));
+        int limit = snap.size();
+        for (int i = from; i < to; i++) {
+            int row = index.rowAt(i);
+            if (row < limit) {
+                found.add(snap.get(row));
+            }
+        }
+        return found;
     }
 
     /**
@@ -93,76 +379,509 @@ public class ReportManager {
      * para mostrar al usuario antes de filtrar por ID de equipo.
      */
     public List<String> listEquipmentIdAndSeverity() {
+        ReportIndexes idx = ensureIndexes();
+        ReportRows.Snapshot snap = rows.snapshot();
+        PostingList.View byDate = idx.byDate.view();
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return reports.stream()
-                .sorted(Comparator.comparing(Report::getReportDate))
-                .map(r -> r.getEquipmentId() + " (" + r.getSeverity().toString() + ", " + r.getReportDate().format(fmt) + ")")
-                .collect(Collectors.toList());
+        List<String> result = new ArrayList<>(snap.size());
+        for (int k = 0; k < byDate.size(); k++) {
+            int i = byDate.rowAt(k);
+            if (i >= snap.size()) {
+                continue;
+            }
+            result.add(snap.equipmentIdAt(i) + " (" + snap.severityAt(i).toString() + ", "
+                    + LocalDate.ofEpochDay(byDate.epochDayAt(k)).format(fmt) + ")");
+        }
+        return result;
     }
 
     /**
      * Devuelve los niveles de severidad que ya existen en los reportes.
      * Sin duplicados, ordenados por el orden del enum (HIGH, MEDIUM, LOW).
+     * Solo revisa los contadores del indice, no recorre los reportes.
      */
     public List<Severity> listSeverityLevelsPresent() {
-        return reports.stream()
-                .map(Report::getSeverity)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        ReportIndexes idx = ensureIndexes();
+        List<Severity> result = new ArrayList<>();
+        for (Severity s : Severity.values()) {
+            if (idx.severity.isPresent(s)) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cantidad de reportes con la severidad indicada, en O(1).
+     *
+     * @param severity nivel a contar
+     * @return cantidad de reportes
+     */
+    public int countBySeverity(Severity severity) {
+        return ensureIndexes().severity.count(severity);
     }
 
     /**
      * Devuelve la fecha mas antigua y la mas reciente de los reportes.
+     * Son la primera y la ultima entrada del indice de fechas, O(1).
      * Si no hay reportes, lanza una excepcion
      *
      * @return el tamaño del arreglo debe ser 2
      */
     public LocalDate[] getDateRange() {
-        if (reports.isEmpty()) {
+        long start = System.nanoTime();
+        PostingList.View byDate = ensureIndexes().byDate.view();
+        if (byDate.size() == 0) {
+            metrics.error(ReportMetrics.Operation.GET_DATE_RANGE);
             throw new IllegalStateException("No hay reportes registrados");
         }
-        LocalDate min = reports.stream()
-                .map(Report::getReportDate)
-                .min(LocalDate::compareTo)
-                .get();
-        LocalDate max = reports.stream()
-                .map(Report::getReportDate)
-                .max(LocalDate::compareTo)
-                .get();
+        LocalDate min = LocalDate.ofEpochDay(byDate.epochDayAt(0));
+        LocalDate max = LocalDate.ofEpochDay(byDate.epochDayAt(byDate.size() - 1));
+        metrics.record(ReportMetrics.Operation.GET_DATE_RANGE, start);
         return new LocalDate[]{min, max};
     }
 
+    // Estadisticas: se mantienen con cada reporte nuevo (ver ReportAggregates), no recorren los reportes
+
+    /**
+     * @return cantidad de reportes por severidad
+     */
+    public Map<Severity, Integer> countsBySeverity() {
+        return ensureIndexes().aggregates.countsBySeverity();
+    }
+
+    /**
+     * @return cantidad de reportes por equipo, ordenado por ID
+     */
+    public Map<String, Integer> countsByEquipment() {
+        return ensureIndexes().aggregates.countsByEquipment();
+    }
+
+    /**
+     * @return cantidad de reportes de hardware por tipo de componente, ordenado por nombre
+     */
+    public Map<String, Integer> countsByComponentType() {
+        return ensureIndexes().aggregates.countsByComponentType();
+    }
+
+    /**
+     * @return cantidad de reportes de hardware que necesitan reemplazo
+     */
+    public int countOpenReplacements() {
+        return ensureIndexes().aggregates.openReplacements();
+    }
+
+    /**
+     * @return reportes que necesitan reemplazo por equipo (solo equipos con alguno)
+     */
+    public Map<String, Integer> openReplacementsByEquipment() {
+        return ensureIndexes().aggregates.openReplacementsByEquipment();
+    }
+
+    /**
+     * Los equipos con mas reportes.
+     *
+     * @param n cantidad de equipos
+     * @return ID y cantidad, de mayor a menor
+     */
+    public Map<String, Integer> topEquipment(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n no puede ser negativo");
+        }
+        return ensureIndexes().aggregates.topEquipment(n);
+    }
+
+    /**
+     * Cantidad de reportes por dia, semana (de lunes a domingo), mes o año.
+     *
+     * @param bucket     ChronoUnit.DAYS, WEEKS, MONTHS o YEARS
+     * @param from       fecha inicial incluida, o null para la primera con reportes
+     * @param to         fecha final incluida, o null para la ultima con reportes
+     * @param severities severidades a contar; sin ninguna se cuentan todas
+     * @return primer dia de cada periodo y su cantidad, en orden (incluye periodos en 0)
+     */
+    public SortedMap<LocalDate, Integer> histogram(ChronoUnit bucket, LocalDate from, LocalDate to,
+                                                   Severity... severities) {
+        return ensureIndexes().aggregates.histogram(bucket, from, to, severities);
+    }
+
     /**
      * Busca todos los reportes cuyo equipmentId coincide con el ingresado.
+     * Usa el indice de equipos, asi que el costo depende solo de cuantos reportes coinciden.
      * @param equipmentId ID del equipo a buscar
      * @return lista de reportes que coinciden
      */
     public List<Report> queryByEquipmentId(String equipmentId) {
-        return reports.stream()
-                .filter(r -> r.getEquipmentId().equalsIgnoreCase(equipmentId))
-                .sorted(Comparator.comparing(Report::getReportDate))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Report> found = cached("e|" + EquipmentIndex.fold(equipmentId),
+                () -> new QueryCache.Scope(EnumSet.noneOf(Severity.class), equipmentId,
+                        Long.MIN_VALUE, Long.MAX_VALUE, null),
+                () -> {
+                    ReportIndexes idx = ensureIndexes();
+                    ReportRows.Snapshot snap = rows.snapshot();
+                    // La lista del indice ya viene ordenada por fecha
+                    PostingList.View matches = idx.equipment.rows(equipmentId);
+                    return materialize(snap, matches, 0, matches.size());
+                });
+        metrics.record(ReportMetrics.Operation.QUERY_BY_EQUIPMENT_ID, start);
+        return found;
     }
 
+    /**
+     * Busca todos los reportes con la severidad indicada.
+     * La particion del indice ya esta ordenada por fecha: O(k).
+     *
+     * @param severity nivel de severidad
+     * @return lista de reportes que coinciden
+     */
     public List<Report> queryBySeverity(Severity severity) {
-        return reports.stream()
-                .filter(r -> r.getSeverity() == severity)
-                .sorted(Comparator.comparing(Report::getReportDate))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Report> found = cached("s|" + severity.name(),
+                () -> new QueryCache.Scope(EnumSet.of(severity), null, Long.MIN_VALUE, Long.MAX_VALUE, null),
+                () -> {
+                    ReportIndexes idx = ensureIndexes();
+                    ReportRows.Snapshot snap = rows.snapshot();
+                    PostingList.View matches = idx.severity.rows(severity);
+                    return materialize(snap, matches, 0, matches.size());
+                });
+        metrics.record(ReportMetrics.Operation.QUERY_BY_SEVERITY, start);
+        return found;
     }
 
     /**
-     * Busca todos los reportes cuya fecha es fromDate.
+     * Busca todos los reportes cuya fecha es fromDate o posterior.
+     * Busqueda binaria en el indice de fechas: O(log n + k).
      *
      * @param fromDate Fecha desde la que se busca, esta incluida
      * @return lista de reportes que coinciden
      */
     public List<Report> queryByDateFrom(LocalDate fromDate) {
-        return reports.stream()
-                .filter(r -> !r.getReportDate().isBefore(fromDate))
-                .sorted(Comparator.comparing(Report::getReportDate))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        long fromDay = fromDate.toEpochDay();
+        List<Report> found = cached("d|" + fromDay + "|",
+                () -> new QueryCache.Scope(EnumSet.noneOf(Severity.class), null, fromDay, Long.MAX_VALUE, null),
+                () -> {
+                    ReportIndexes idx = ensureIndexes();
+                    ReportRows.Snapshot snap = rows.snapshot();
+                    PostingList.View byDate = idx.byDate.view();
+                    return materialize(snap, byDate, byDate.lowerBound(fromDay), byDate.size());
+                });
+        metrics.record(ReportMetrics.Operation.QUERY_BY_DATE_FROM, start);
+        return found;
+    }
+
+    /**
+     * Busca todos los reportes con fecha entre fromDate y toDate.
+     *
+     * @param fromDate Fecha inicial, esta incluida
+     * @param toDate   Fecha final, esta incluida
+     * @return lista de reportes que coinciden, ordenada por fecha
+     */
+    public List<Report> queryByDateRange(LocalDate fromDate, LocalDate toDate) {
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("La fecha final es anterior a la inicial");
+        }
+        long start = System.nanoTime();
+        long fromDay = fromDate.toEpochDay();
+        long toDay = toDate.toEpochDay();
+        List<Report> found = cached("d|" + fromDay + "|" + toDay,
+                () -> new QueryCache.Scope(EnumSet.noneOf(Severity.class), null, fromDay, toDay, null),
+                () -> {
+                    ReportIndexes idx = ensureIndexes();
+                    ReportRows.Snapshot snap = rows.snapshot();
+                    PostingList.View byDate = idx.byDate.view();
+                    int from = byDate.lowerBound(fromDay);
+                    int to = byDate.lowerBound(toDay + 1);
+                    return materialize(snap, byDate, from, to);
+                });
+        metrics.record(ReportMetrics.Operation.QUERY_BY_DATE_RANGE, start);
+        return found;
+    }
+
+    /**
+     * Ejecuta una consulta con varios criterios.
+     * Se recorre solo el indice mas selectivo y los demas criterios se revisan por fila,
+     * asi que el costo depende del tamaño del resultado y no de la cantidad de reportes.
+     * Si la misma consulta se repite sin que entre medio se agreguen reportes que la cambien,
+     * el resultado sale de la cache (ver queryCacheStats).
+     *
+     * @param q consulta armada con ReportQuery.builder()
+     * @return reportes que cumplen todos los criterios, en el orden pedido
+     */
+    public List<Report> query(ReportQuery q) {
+        return query(q, ReportMetrics.Operation.QUERY, System.nanoTime());
+    }
+
+    /**
+     * query(q) registrando la llamada en la operacion indicada (query, searchText...).
+     */
+    private List<Report> query(ReportQuery q, ReportMetrics.Operation op, long start) {
+        List<Report> result = cached(q.cacheKey(), () -> QueryCache.Scope.of(q), () -> {
+            List<Report> found = new ArrayList<>();
+            new ResultIterator(q, false, null).forEachRemaining(found::add);
+            return found;
+        });
+        metrics.record(op, start);
+        return result;
+    }
+
+    /**
+     * Igual que query(q), pero los reportes se buscan a medida que se piden: el primero
+     * sale sin recorrer el resto y no se arma ninguna lista. El recorrido usa la foto de los
+     * reportes del momento en que se llama (lo que se agregue despues no aparece).
+     *
+     * @param q consulta
+     * @return reportes que cumplen todos los criterios, en el orden pedido
+     */
+    public Iterator<Report> iterator(ReportQuery q) {
+        return new ResultIterator(q, false, ReportMetrics.Operation.ITERATOR);
+    }
+
+    /**
+     * Como iterator(q), en un Stream ordenado y secuencial.
+     *
+     * @param q consulta
+     * @return reportes que cumplen todos los criterios, en el orden pedido
+     */
+    public Stream<Report> stream(ReportQuery q) {
+        Iterator<Report> it = new ResultIterator(q, false, ReportMetrics.Operation.STREAM);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Devuelve una pagina de a lo sumo q.getLimit() reportes y el token para pedir la siguiente
+     * (ReportQuery.Builder.pageToken). Ir a la pagina siguiente es una busqueda binaria en el
+     * indice, no hace falta recorrer las anteriores como con offset.
+     *
+     * @param q consulta con limit; sin limit la pagina trae todo el resultado
+     * @return reportes de la pagina y token de la siguiente (null si no hay mas)
+     */
+    public ReportPage queryPage(ReportQuery q) {
+        long start = System.nanoTime();
+        String key = "p" + q.cacheKey();
+        Object hit = cache.get(key);
+        if (hit != null) {
+            metrics.record(ReportMetrics.Operation.QUERY_PAGE, start);
+            return (ReportPage) hit;
+        }
+        long version = cache.version();
+        ResultIterator it = new ResultIterator(q, true, null);
+        List<Report> page = new ArrayList<>();
+        while (page.size() < q.getLimit() && it.hasNext()) {
+            page.add(it.next());
+        }
+        String token = !page.isEmpty() && it.hasNext() ? ReportPage.encodeToken(it.lastKey(), q.getSortOrder()) : null;
+        ReportPage result = new ReportPage(page, token);
+        cache.put(key, QueryCache.Scope.of(q), result, page.size(), version);
+        metrics.record(ReportMetrics.Operation.QUERY_PAGE, start);
+        return result;
+    }
+
+    /**
+     * Devuelve el resultado guardado en la cache o, si no esta, lo calcula y lo guarda.
+     * La version se lee antes de calcular (y de tomar la foto), ver QueryCache.
+     *
+     * @param key   clave normalizada de la consulta
+     * @param scope reportes que pueden cambiar el resultado
+     * @param run   calcula el resultado
+     * @return una copia propia del resultado: el que llama la puede ordenar o modificar
+     *         sin tocar lo guardado en la cache
+     */
+    @SuppressWarnings("unchecked")
+    private List<Report> cached(String key, Supplier<QueryCache.Scope> scope, Supplier<List<Report>> run) {
+        if (!cache.isEnabled()) {
+            return run.get();
+        }
+        Object hit = cache.get(key);
+        if (hit != null) {
+            return new ArrayList<>((List<Report>) hit);
+        }
+        long version = cache.version();
+        List<Report> result = run.get();
+        cache.put(key, scope.get(), Collections.unmodifiableList(new ArrayList<>(result)), result.size(), version);
+        return result;
+    }
+
+    /**
+     * Contadores de la cache de consultas: hits, misses, evictions (sacadas por falta de lugar),
+     * invalidations (sacadas porque un reporte nuevo las cambia), entries y reports guardados.
+     *
+     * @return nombre y valor de cada contador, en ese orden
+     */
+    public Map<String, Long> queryCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Recorre el cursor del plan y aplica por fila los filtros que el indice elegido no cubre,
+     * y despues offset y limit. Busca el siguiente reporte recien cuando se pide.
+     */
+    private final class ResultIterator implements Iterator<Report> {
+        private final ReportQuery q;
+        private final ReportIndexes idx;
+        private final ReportRows.Snapshot snap;
+        private final QueryPlan.Cursor cursor;
+        private final boolean checkEquipment;
+        private final boolean checkSeverity;
+        private final ReportQuery.ReportType type;
+        private int toSkip;
+        // Cuantos reportes quedan por entregar; para queryPage no hay tope (lo pone la pagina)
+        private int remaining;
+        private Report next;
+        private long nextKey;
+        private long lastKey;
+        // Operacion donde se registra el tiempo hasta el primer resultado; null si no se mide
+        private ReportMetrics.Operation firstResult;
+        private final long start = System.nanoTime();
+
+        /**
+         * @param unlimited   true para no cortar en q.getLimit() (queryPage pone su propio tope)
+         * @param firstResult operacion donde registrar el tiempo hasta el primer resultado, o null
+         */
+        ResultIterator(ReportQuery q, boolean unlimited, ReportMetrics.Operation firstResult) {
+            this.firstResult = firstResult;
+            this.q = q;
+            this.idx = indexesFor(q);
+            this.snap = rows.snapshot();
+            QueryPlan plan = QueryPlan.choose(q, idx);
+            this.checkEquipment = plan.checksEquipment(q);
+            this.checkSeverity = plan.checksSeverity(q);
+            this.type = q.getType();
+            // El offset es de la primera pagina: las siguientes empiezan despues del token
+            this.toSkip = q.getPageToken() == null ? q.getOffset() : 0;
+            this.remaining = unlimited ? Integer.MAX_VALUE : q.getLimit();
+            this.cursor = plan.cursor(q.getSortOrder() == ReportQuery.SortOrder.NEWEST_FIRST, snap.size());
+            if (q.getPageToken() != null) {
+                cursor.resumeAfter(ReportPage.decodeToken(q.getPageToken(), q.getSortOrder()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && remaining > 0) {
+                next = find();
+            }
+            if (firstResult != null) {
+                metrics.record(firstResult, start);
+                firstResult = null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Report next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Report r = next;
+            next = null;
+            lastKey = nextKey;
+            remaining--;
+            return r;
+        }
+
+        /**
+         * @return clave en el indice del ultimo reporte entregado por next()
+         */
+        long lastKey() {
+            return lastKey;
+        }
+
+        private Report find() {
+            for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+                if (checkSeverity && !matchesSeverity(idx, q, row)) {
+                    continue;
+                }
+                if (checkEquipment && !q.getEquipmentId().equalsIgnoreCase(snap.equipmentIdAt(row))) {
+                    continue;
+                }
+                if (type != null && snap.isHardwareAt(row) != (type == ReportQuery.ReportType.HARDWARE)) {
+                    continue;
+                }
+                Report r = null;
+                if (q.needsDetails()) {
+                    r = snap.get(row);
+                    if (!q.matchesDetails(r)) {
+                        continue;
+                    }
+                }
+                if (toSkip > 0) {
+                    toSkip--;
+                    continue;
+                }
+                nextKey = cursor.lastKey();
+                return r != null ? r : snap.get(row);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Busca reportes por texto en la descripcion, sin distinguir mayusculas ni tildes.
+     * Acepta palabras, prefijos (dañ*) y frases entre comillas ("disco dañado").
+     *
+     * @param text busqueda
+     * @return reportes que tienen todas las partes, del mas reciente al mas antiguo
+     * @throws IllegalArgumentException si la busqueda no tiene palabras
+     */
+    public List<Report> searchText(String text) {
+        long start = System.nanoTime();
+        ReportQuery q;
+        try {
+            q = ReportQuery.builder()
+                    .text(text)
+                    .sort(ReportQuery.SortOrder.NEWEST_FIRST)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            metrics.error(ReportMetrics.Operation.SEARCH_TEXT);
+            throw e;
+        }
+        return query(q, ReportMetrics.Operation.SEARCH_TEXT, start);
+    }
+
+    /**
+     * Busca los reportes de un software dentro de un rango de versiones,
+     * por ejemplo Office desde 2.3.0 (incluida) hasta 3.0.0 (excluida).
+     *
+     * @param softwareName  nombre del software, sin distinguir mayusculas
+     * @param fromInclusive version minima A.B.C, o null
+     * @param toExclusive   version maxima A.B.C, o null
+     * @return reportes del rango, del mas antiguo al mas reciente
+     * @throws IllegalArgumentException si alguna version no es A.B.C
+     */
+    public List<Report> queryBySoftwareVersion(String softwareName, String fromInclusive, String toExclusive) {
+        long start = System.nanoTime();
+        ReportQuery q;
+        try {
+            q = ReportQuery.builder()
+                    .softwareName(softwareName)
+                    .versionRange(fromInclusive, toExclusive)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            metrics.error(ReportMetrics.Operation.QUERY_BY_SOFTWARE_VERSION);
+            throw e;
+        }
+        return query(q, ReportMetrics.Operation.QUERY_BY_SOFTWARE_VERSION, start);
+    }
+
+    /**
+     * Describe que indice usaria la consulta y cuantas filas recorreria.
+     *
+     * @param q consulta
+     * @return texto con el plan elegido
+     */
+    public String explain(ReportQuery q) {
+        return QueryPlan.choose(q, indexesFor(q)).describe();
+    }
+
+    private static boolean matchesSeverity(ReportIndexes idx, ReportQuery q, int row) {
+        for (Severity s : q.getSeverities()) {
+            if (idx.severity.matches(s, row)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -174,6 +893,29 @@ public class ReportManager {
      * @throws IOException si hay error al crear/escribir el archivo
      */
     public void generateReportFile(String type) throws IOException {
+        generateReportFile(type, false);
+    }
+
+    /**
+     * Igual que generateReportFile(type), pero puede comprimir la salida con gzip
+     * (el archivo termina en .txt.gz). Los reportes se escriben en orden de fecha
+     * a medida que se formatean, sin juntarlos antes en una lista (ver ReportExporter).
+     * @param type "Hardware" o "Software"
+     * @param gzip true para comprimir el archivo
+     * @throws IOException si hay error al crear/escribir el archivo
+     */
+    public void generateReportFile(String type, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        try {
+            writeReportFile(type, gzip);
+        } catch (IOException | RuntimeException e) {
+            metrics.error(ReportMetrics.Operation.GENERATE_REPORT_FILE);
+            throw e;
+        }
+        metrics.record(ReportMetrics.Operation.GENERATE_REPORT_FILE, start);
+    }
+
+    private void writeReportFile(String type, boolean gzip) throws IOException {
         String tipoNorm = type.trim().toLowerCase();
         boolean isHardware;
         if (tipoNorm.equals("hardware")) {
@@ -184,38 +926,29 @@ public class ReportManager {
             throw new IllegalArgumentException("Tipo invalido para reporte: " + type);
         }
 
-        List<Report> filtered = reports.stream()
-                .filter(r -> {
-                    if (isHardware) {
-                        return r instanceof HardwareReport;
-                    } else {
-                        return r instanceof SoftwareReport;
-                    }
-                })
-                .sorted(Comparator.comparing(Report::getReportDate))
-                .collect(Collectors.toList());
-
-        if (filtered.isEmpty()) {
-            System.out.println("No hay reportes de tipo " + type);
-            return;
-        }
+        ReportIndexes idx = ensureIndexes();
+        ReportRows.Snapshot snap = rows.snapshot();
+        PostingList.View byDate = idx.byDate.view();
 
-        Files.createDirectories(Paths.get(REPORTS_FOLDER));
+        Files.createDirectories(reportsFolder);
 
         LocalDate today = LocalDate.now();
         String timeStamp = java.time.LocalTime.now().format(DateTimeFormatter.ofPattern("HH-mm-ss"));
-        String fileName = String.format("Reporte_%s_%s_%s.txt",
+        String fileName = String.format("Reporte_%s_%s_%s.txt%s",
                 isHardware ? "Hardware" : "Software",
                 today.toString(),
-                timeStamp
+                timeStamp,
+                gzip ? ".gz" : ""
         );
-        String fullPath = REPORTS_FOLDER + File.separator + fileName;
+        Path fullPath = reportsFolder.resolve(fileName);
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fullPath))) {
-            for (Report r : filtered) {
-                writer.write(r.toString());
-                writer.newLine();
-            }
+        ReportExporter exporter = new ReportExporter(snap, byDate, isHardware,
+                Runtime.getRuntime().availableProcessors());
+        long written = exporter.writeTo(fullPath, gzip);
+        if (written == 0) {
+            Files.deleteIfExists(fullPath);
+            System.out.println("No hay reportes de tipo " + type);
+            return;
         }
 
         System.out.println("Reporte generado en: " + fullPath);
@@ -242,35 +975,41 @@ public class ReportManager {
      * @throws InvalidSoftwareVersionException si no cumple el formato
      */
     public void validateSoftwareVersion(String version) throws InvalidSoftwareVersionException {
-        String regex = "^[0-9]+\\.[0-9]+\\.[0-9]+$";
-        if (!Pattern.matches(regex, version.trim())) {
+        if (!SoftwareVersion.isValid(version)) {
             throw new InvalidSoftwareVersionException("La version debe ser A.B.C con numeros");
         }
     }
 
     /**
-     * Convierte texto a Severity o lanza excepcion si es invalido.
+     * Convierte texto a Severity o lanza excepcion si es invalido (ver InputParser).
      *
      * @param input texto de severidad
      * @return Severity correspondiente
      * @throws InvalidSeverityException si no coincide con Alto, medio o bajo
      */
     public Severity parseSeverity(String input) throws InvalidSeverityException {
-        try {
-            return Severity.fromString(input);
-        } catch (IllegalArgumentException ex) {
-            throw new InvalidSeverityException("Severidad invalida. Use Alto/Medio/Bajo");
-        }
+        return InputParser.parseSeverity(input);
     }
 
     /**
-     * Convierte texto a LocalDate en formato YYYY-MM-DD.
+     * Convierte texto a LocalDate en formato YYYY-MM-DD (ver InputParser).
      *
      * @param input texto de fecha
      * @return LocalDate resultante
      * @throws DateTimeParseException si no es formato valido
      */
     public LocalDate parseDate(String input) throws DateTimeParseException {
-        return LocalDate.parse(input.trim());
+        return InputParser.parseDate(input);
+    }
+
+    /**
+     * Convierte texto a numero de serie y lo valida (ver validateSerialNumber).
+     *
+     * @param input texto del numero de serie
+     * @return numero de serie mayor que 0
+     * @throws InvalidSerialNumberException si no es entero o no es positivo
+     */
+    public int parseSerialNumber(String input) throws InvalidSerialNumberException {
+        return InputParser.parseSerialNumber(input);
     }
 }
@@ -0,0 +1,211 @@
+package service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cantidad de llamadas, errores e histograma de latencias (ver LatencyHistogram) de cada
+ * operacion de un ReportManager. Registrar una llamada cuesta dos System.nanoTime()
+ * y unos incrementos atomicos, asi que se mide siempre.
+ *
+ * Se puede ver de dos formas:
+ * - dump(): una tabla de texto con una fila por operacion (comando metrics, GET /metrics)
+ * - JMX: registerMBeans() publica un OperationMetricsMXBean por operacion con el nombre
+ *   reports:type=ReportManager,id=N,operation=addReport (se ven con jconsole o VisualVM).
+ *   No se registra solo porque arrancar el servidor JMX tarda unos cientos de milisegundos,
+ *   mucho para un comando de una sola consulta.
+ */
+public final class ReportMetrics {
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    // Operaciones medidas
+    public enum Operation {
+        LOAD("load"),
+        ADD_REPORT("addReport"),
+        ADD_REPORTS("addReports"),
+        // Desde addReport hasta que el reporte queda guardado segun la durabilidad
+        SAVE("save"),
+        QUERY_BY_EQUIPMENT_ID("queryByEquipmentId"),
+        QUERY_BY_SEVERITY("queryBySeverity"),
+        QUERY_BY_DATE_FROM("queryByDateFrom"),
+        QUERY_BY_DATE_RANGE("queryByDateRange"),
+        QUERY("query"),
+        QUERY_PAGE("queryPage"),
+        SEARCH_TEXT("searchText"),
+        QUERY_BY_SOFTWARE_VERSION("queryBySoftwareVersion"),
+        GET_DATE_RANGE("getDateRange"),
+        // iterator y stream: hasta el primer resultado (o hasta saber que no hay ninguno)
+        ITERATOR("iterator"),
+        STREAM("stream"),
+        GENERATE_REPORT_FILE("generateReportFile");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final int id = IDS.incrementAndGet();
+    private final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    ReportMetrics() {
+        for (Operation op : Operation.values()) {
+            operations.put(op, new OperationMetrics());
+        }
+    }
+
+    /**
+     * Registra una llamada que termino bien.
+     *
+     * @param startNanos System.nanoTime() del comienzo de la llamada
+     */
+    void record(Operation op, long startNanos) {
+        operations.get(op).histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Registra una llamada que fallo; su duracion no entra en el histograma.
+     */
+    void error(Operation op) {
+        operations.get(op).errors.increment();
+    }
+
+    public OperationMetricsMXBean get(Operation op) {
+        return operations.get(op);
+    }
+
+    public void reset() {
+        for (OperationMetrics m : operations.values()) {
+            m.reset();
+        }
+    }
+
+    /**
+     * @return tabla con cantidad, errores, promedio, percentiles y maximo (en microsegundos)
+     *         de cada operacion que se llamo al menos una vez
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-24s %10s %7s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "mean_us", "p50_us", "p90_us", "p99_us", "p999_us", "max_us"));
+        for (Map.Entry<Operation, OperationMetrics> e : operations.entrySet()) {
+            LatencyHistogram.Snapshot s = e.getValue().histogram.snapshot();
+            long errors = e.getValue().errors.sum();
+            if (s.getCount() == 0 && errors == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.ROOT, "%-24s %10d %7d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    e.getKey(), s.getCount(), errors, s.getMean() / 1000.0, micros(s.percentile(0.5)),
+                    micros(s.percentile(0.9)), micros(s.percentile(0.99)), micros(s.percentile(0.999)),
+                    micros(s.getMax())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Publica las metricas por JMX. Llamarlo mas de una vez no hace nada.
+     */
+    public synchronized void registerMBeans() {
+        if (!registered.isEmpty()) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Map.Entry<Operation, OperationMetrics> e : operations.entrySet()) {
+                ObjectName name = new ObjectName("reports:type=ReportManager,id=" + id + ",operation=" + e.getKey());
+                server.registerMBean(e.getValue(), name);
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            System.err.println("Error al registrar las metricas en JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saca las metricas de JMX, si estaban registradas. Lo llama ReportManager.close().
+     */
+    synchronized void unregisterMBeans() {
+        if (registered.isEmpty()) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                System.err.println("Error al sacar las metricas de JMX: " + e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        @Override
+        public long getCount() {
+            return histogram.snapshot().getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.snapshot().getMean() / 1000.0;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return micros(histogram.snapshot().percentile(0.5));
+        }
+
+        @Override
+        public double getP90Micros() {
+            return micros(histogram.snapshot().percentile(0.9));
+        }
+
+        @Override
+        public double getP99Micros() {
+            return micros(histogram.snapshot().percentile(0.99));
+        }
+
+        @Override
+        public double getP999Micros() {
+            return micros(histogram.snapshot().percentile(0.999));
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return micros(histogram.snapshot().getMax());
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+            errors.reset();
+        }
+    }
+}
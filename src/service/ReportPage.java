@@ -0,0 +1,62 @@
+package service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import model.Report;
+
+/**
+ * Una pagina del resultado de ReportManager.queryPage(): hasta limit reportes y el token
+ * para pedir la siguiente con ReportQuery.Builder.pageToken().
+ *
+ * El token guarda la posicion del ultimo reporte entregado (fecha y orden de llegada),
+ * no un numero de pagina: la pagina siguiente sigue exactamente donde termino esta aunque
+ * se hayan agregado reportes en el medio, y pedirla cuesta lo mismo que pedir la primera.
+ * Un token solo sirve para una consulta con los mismos criterios y el mismo orden.
+ */
+public final class ReportPage {
+    private final List<Report> reports;
+    private final String nextPageToken;
+
+    ReportPage(List<Report> reports, String nextPageToken) {
+        this.reports = Collections.unmodifiableList(reports);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return token de la pagina siguiente, o null si esta es la ultima
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    // Token: una letra con el orden (o/n) y la clave en base 36
+
+    static String encodeToken(long key, ReportQuery.SortOrder order) {
+        return (order == ReportQuery.SortOrder.NEWEST_FIRST ? "n" : "o") + Long.toString(key, 36);
+    }
+
+    /**
+     * @return la clave (ver PostingList.key) guardada en el token
+     * @throws IllegalArgumentException si el token esta mal formado o es de otro orden
+     */
+    static long decodeToken(String token, ReportQuery.SortOrder order) {
+        String prefix = order == ReportQuery.SortOrder.NEWEST_FIRST ? "n" : "o";
+        if (token.length() < 2 || !token.startsWith(prefix)) {
+            throw new IllegalArgumentException("Token de pagina invalido: " + token);
+        }
+        try {
+            return Long.parseLong(token.substring(1).toLowerCase(Locale.ROOT), 36);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Token de pagina invalido: " + token);
+        }
+    }
+}
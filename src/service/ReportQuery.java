@@ -0,0 +1,497 @@
+package service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+import model.SoftwareVersion;
+
+/**
+ * Consulta con varios criterios a la vez, por ejemplo
+ * "severidad Alto del equipo EQ12 desde 2025-01-01":
+ *
+ * <pre>
+ * ReportQuery q = ReportQuery.builder()
+ *         .equipmentId("EQ12")
+ *         .severity(Severity.HIGH)
+ *         .from(LocalDate.of(2025, 1, 1))
+ *         .build();
+ * List&lt;Report&gt; result = manager.query(q);
+ * </pre>
+ *
+ * Los criterios que no se indican no filtran. Los textos se comparan sin distinguir mayusculas.
+ * La busqueda de texto (text) tampoco distingue tildes; ver TextQuery para la sintaxis.
+ * Las versiones se comparan como numeros (2.10.0 es mayor que 2.9.3), por ejemplo
+ * "Office &gt;= 2.3.0 &lt; 3.0.0": softwareName("Office").versionRange("2.3.0", "3.0.0").
+ */
+public final class ReportQuery {
+
+    // Tipo de reporte a buscar
+    public enum ReportType {
+        HARDWARE,
+        SOFTWARE
+    }
+
+    // Orden del resultado por fecha
+    public enum SortOrder {
+        OLDEST_FIRST,
+        NEWEST_FIRST
+    }
+
+    private final String equipmentId;
+    private final Set<Severity> severities;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final ReportType type;
+    private final String componentType;
+    private final String operatingSystem;
+    private final String softwareName;
+    private final TextQuery text;
+    private final boolean textInDetails;
+    private final String versionFrom;
+    private final String versionTo;
+    // Las mismas versiones empaquetadas (ver SoftwareVersion); [0, Long.MAX_VALUE) sin rango
+    private final long packedVersionFrom;
+    private final long packedVersionTo;
+    private final SortOrder sortOrder;
+    private final int offset;
+    private final int limit;
+    private final String pageToken;
+
+    private ReportQuery(Builder b) {
+        this.equipmentId = b.equipmentId;
+        this.severities = b.severities.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(b.severities));
+        this.from = b.from;
+        this.to = b.to;
+        this.type = b.type;
+        this.componentType = b.componentType;
+        this.operatingSystem = b.operatingSystem;
+        this.softwareName = b.softwareName;
+        this.text = b.text == null ? null : TextQuery.parse(b.text);
+        this.textInDetails = b.textInDetails;
+        this.versionFrom = b.versionFrom;
+        this.versionTo = b.versionTo;
+        this.packedVersionFrom = versionFrom == null ? 0 : SoftwareVersion.parse(versionFrom);
+        this.packedVersionTo = versionTo == null ? Long.MAX_VALUE : SoftwareVersion.parse(versionTo);
+        this.sortOrder = b.sortOrder;
+        this.offset = b.offset;
+        this.limit = b.limit;
+        this.pageToken = b.pageToken;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getEquipmentId() {
+        return equipmentId;
+    }
+
+    /**
+     * @return severidades aceptadas; vacio significa todas
+     */
+    public Set<Severity> getSeverities() {
+        return severities;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /**
+     * Tipo de reporte pedido. Si se filtra por componente se asume HARDWARE,
+     * y si se filtra por sistema operativo o software se asume SOFTWARE.
+     *
+     * @return tipo pedido o null si acepta los dos
+     */
+    public ReportType getType() {
+        if (type != null) {
+            return type;
+        }
+        if (componentType != null) {
+            return ReportType.HARDWARE;
+        }
+        if (operatingSystem != null || softwareName != null || hasVersionRange()) {
+            return ReportType.SOFTWARE;
+        }
+        return null;
+    }
+
+    public String getComponentType() {
+        return componentType;
+    }
+
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+
+    public String getSoftwareName() {
+        return softwareName;
+    }
+
+    /**
+     * @return busqueda de texto tal como se escribio, o null si no hay
+     */
+    public String getText() {
+        return text == null ? null : text.toString();
+    }
+
+    /**
+     * @return true si el texto tambien se busca en componentType o softwareName
+     */
+    public boolean isTextInDetails() {
+        return textInDetails;
+    }
+
+    TextQuery getTextQuery() {
+        return text;
+    }
+
+    /**
+     * @return version minima (incluida), o null si no hay
+     */
+    public String getVersionFrom() {
+        return versionFrom;
+    }
+
+    /**
+     * @return version maxima (excluida), o null si no hay
+     */
+    public String getVersionTo() {
+        return versionTo;
+    }
+
+    boolean hasVersionRange() {
+        return versionFrom != null || versionTo != null;
+    }
+
+    long getPackedVersionFrom() {
+        return packedVersionFrom;
+    }
+
+    long getPackedVersionTo() {
+        return packedVersionTo;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * @return resultados a saltar desde el principio; con pageToken no se usa
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return cantidad maxima de resultados, Integer.MAX_VALUE si no hay limite
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return token de la pagina a pedir (ver ReportPage), o null para empezar desde el principio
+     */
+    public String getPageToken() {
+        return pageToken;
+    }
+
+    /**
+     * Revisa los criterios que solo se pueden ver con el Report completo
+     * (componente, sistema operativo, nombre de software y texto).
+     */
+    boolean matchesDetails(Report r) {
+        if (text != null && !text.matches(r, textInDetails)) {
+            return false;
+        }
+        if (componentType != null) {
+            if (!(r instanceof HardwareReport)
+                    || !componentType.equalsIgnoreCase(((HardwareReport) r).getComponentType())) {
+                return false;
+            }
+        }
+        if (operatingSystem != null || softwareName != null || hasVersionRange()) {
+            if (!(r instanceof SoftwareReport)) {
+                return false;
+            }
+            SoftwareReport sw = (SoftwareReport) r;
+            if (operatingSystem != null && !operatingSystem.equalsIgnoreCase(sw.getOperatingSystem())) {
+                return false;
+            }
+            if (softwareName != null && !softwareName.equalsIgnoreCase(sw.getSoftwareName())) {
+                return false;
+            }
+            if (hasVersionRange()) {
+                long version = sw.getPackedVersion();
+                if (version == SoftwareVersion.INVALID
+                        || version < packedVersionFrom || version >= packedVersionTo) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    boolean needsDetails() {
+        return componentType != null || operatingSystem != null || softwareName != null || text != null
+                || hasVersionRange();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ReportQuery{");
+        append(sb, "equipmentId", equipmentId);
+        append(sb, "severities", severities.isEmpty() ? null : severities);
+        append(sb, "from", from);
+        append(sb, "to", to);
+        append(sb, "type", getType());
+        append(sb, "componentType", componentType);
+        append(sb, "operatingSystem", operatingSystem);
+        append(sb, "softwareName", softwareName);
+        append(sb, "text", text);
+        append(sb, "textInDetails", textInDetails ? true : null);
+        append(sb, "versionFrom", versionFrom);
+        append(sb, "versionTo", versionTo);
+        append(sb, "sort", sortOrder);
+        append(sb, "offset", offset == 0 ? null : offset);
+        append(sb, "limit", limit == Integer.MAX_VALUE ? null : limit);
+        append(sb, "pageToken", pageToken);
+        if (sb.charAt(sb.length() - 1) == ' ') {
+            sb.setLength(sb.length() - 2);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Clave para QueryCache: dos consultas con la misma clave dan el mismo resultado.
+     * Los textos van en minusculas porque se comparan sin distinguir mayusculas.
+     * Los textos del usuario pueden tener cualquier caracter (incluido el separador),
+     * asi que cada uno va con su largo adelante; null se escribe distinto de "".
+     */
+    String cacheKey() {
+        StringBuilder sb = new StringBuilder("q|");
+        field(sb, equipmentId == null ? null : EquipmentIndex.fold(equipmentId));
+        for (Severity s : severities) {
+            sb.append(s.ordinal());
+        }
+        sb.append('|').append(from).append('|').append(to).append('|').append(getType()).append('|');
+        field(sb, lower(componentType));
+        field(sb, lower(operatingSystem));
+        field(sb, lower(softwareName));
+        field(sb, text == null ? null : lower(text.toString()));
+        sb.append(textInDetails).append('|').append(packedVersionFrom).append('|').append(packedVersionTo)
+                .append('|').append(sortOrder).append('|').append(offset).append('|').append(limit).append('|');
+        field(sb, pageToken);
+        return sb.toString();
+    }
+
+    /**
+     * Agrega un texto como largo:texto| (o -| si es null): se sabe donde termina sin mirar su contenido.
+     */
+    private static void field(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("-|");
+        } else {
+            sb.append(value.length()).append(':').append(value).append('|');
+        }
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static void append(StringBuilder sb, String name, Object value) {
+        if (value != null) {
+            sb.append(name).append('=').append(value).append(", ");
+        }
+    }
+
+    /**
+     * Arma la consulta paso a paso. Cada metodo devuelve el mismo builder.
+     */
+    public static final class Builder {
+        private String equipmentId;
+        private final Set<Severity> severities = EnumSet.noneOf(Severity.class);
+        private LocalDate from;
+        private LocalDate to;
+        private ReportType type;
+        private String componentType;
+        private String operatingSystem;
+        private String softwareName;
+        private String text;
+        private boolean textInDetails;
+        private String versionFrom;
+        private String versionTo;
+        private SortOrder sortOrder = SortOrder.OLDEST_FIRST;
+        private int offset;
+        private int limit = Integer.MAX_VALUE;
+        private String pageToken;
+
+        private Builder() {
+        }
+
+        public Builder equipmentId(String equipmentId) {
+            this.equipmentId = equipmentId == null ? null : equipmentId.trim();
+            return this;
+        }
+
+        /**
+         * Agrega severidades aceptadas. Se puede llamar varias veces.
+         */
+        public Builder severity(Severity... severities) {
+            this.severities.addAll(Arrays.asList(severities));
+            return this;
+        }
+
+        /**
+         * @param from fecha inicial, incluida
+         */
+        public Builder from(LocalDate from) {
+            this.from = from;
+            return this;
+        }
+
+        /**
+         * @param to fecha final, incluida
+         */
+        public Builder to(LocalDate to) {
+            this.to = to;
+            return this;
+        }
+
+        public Builder type(ReportType type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder componentType(String componentType) {
+            this.componentType = componentType;
+            return this;
+        }
+
+        public Builder operatingSystem(String operatingSystem) {
+            this.operatingSystem = operatingSystem;
+            return this;
+        }
+
+        public Builder softwareName(String softwareName) {
+            this.softwareName = softwareName;
+            return this;
+        }
+
+        /**
+         * Busqueda de texto en la descripcion, sin distinguir mayusculas ni tildes.
+         * Todas las partes tienen que aparecer: palabras, prefijos (dañ*) y frases
+         * entre comillas ("disco dañado").
+         */
+        public Builder text(String text) {
+            this.text = text;
+            return this;
+        }
+
+        /**
+         * @param textInDetails true para buscar el texto tambien en componentType (hardware)
+         *                      o softwareName (software)
+         */
+        public Builder textInDetails(boolean textInDetails) {
+            this.textInDetails = textInDetails;
+            return this;
+        }
+
+        /**
+         * Rango de versiones de software. Cualquiera de los extremos puede ser null.
+         *
+         * @param fromInclusive version minima A.B.C, incluida
+         * @param toExclusive   version maxima A.B.C, excluida
+         */
+        public Builder versionRange(String fromInclusive, String toExclusive) {
+            this.versionFrom = fromInclusive == null ? null : fromInclusive.trim();
+            this.versionTo = toExclusive == null ? null : toExclusive.trim();
+            return this;
+        }
+
+        public Builder sort(SortOrder sortOrder) {
+            this.sortOrder = sortOrder;
+            return this;
+        }
+
+        /**
+         * @param offset cantidad de resultados a saltar desde el principio; solo se aplica
+         *               a la primera pagina (sin pageToken)
+         */
+        public Builder offset(int offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * @param limit cantidad maxima de resultados
+         */
+        public Builder limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Sigue una consulta paginada: el resultado empieza despues del ultimo reporte
+         * de la pagina anterior. El offset se ignora, porque ya se salto en la primera pagina:
+         * asi la pagina siguiente se pide repitiendo la consulta con el token.
+         *
+         * @param pageToken ReportPage.getNextPageToken() de la pagina anterior, o null
+         */
+        public Builder pageToken(String pageToken) {
+            this.pageToken = pageToken == null || pageToken.trim().isEmpty() ? null : pageToken.trim();
+            return this;
+        }
+
+        /**
+         * @return la consulta
+         * @throws IllegalArgumentException si los criterios se contradicen o el token no es valido
+         */
+        public ReportQuery build() {
+            if (from != null && to != null && to.isBefore(from)) {
+                throw new IllegalArgumentException("La fecha final es anterior a la inicial");
+            }
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("offset y limit no pueden ser negativos");
+            }
+            if (sortOrder == null) {
+                throw new IllegalArgumentException("El orden no puede ser null");
+            }
+            if (pageToken != null) {
+                ReportPage.decodeToken(pageToken, sortOrder);
+            }
+            boolean hardwareOnly = componentType != null;
+            checkVersion(versionFrom);
+            checkVersion(versionTo);
+            boolean softwareOnly = operatingSystem != null || softwareName != null
+                    || versionFrom != null || versionTo != null;
+            if ((hardwareOnly && softwareOnly)
+                    || (type == ReportType.HARDWARE && softwareOnly)
+                    || (type == ReportType.SOFTWARE && hardwareOnly)) {
+                throw new IllegalArgumentException("Se mezclan criterios de hardware y de software");
+            }
+            return new ReportQuery(this);
+        }
+
+        private static void checkVersion(String version) {
+            if (version != null && SoftwareVersion.parse(version) == SoftwareVersion.INVALID) {
+                throw new IllegalArgumentException("Version invalida: " + version + " (debe ser A.B.C)");
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package service;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+
+/**
+ * Todos los reportes en orden de llegada: los del snapshot mapeado (si hay)
+ * y despues los que se agregaron en memoria, como objetos Report o,
+ * en modo columnar, dentro de un ColumnarReportStore.
+ *
+ * Un solo hilo escribe y muchos leen sin locks. Los lectores piden snapshot(),
+ * que es una foto inmutable: el escritor solo escribe en posiciones despues del
+ * ultimo tamaño publicado y, si tiene que crecer, copia el arreglo.
+ */
+final class ReportRows {
+    private final MappedSnapshot base;
+    private Report[] tail = new Report[16];
+    // Reemplaza a tail en modo columnar
+    private final ColumnarReportStore columnar;
+    private int pending;
+    private volatile Snapshot current;
+
+    /**
+     * @param base snapshot mapeado, o null si todos los reportes estan en memoria
+     */
+    ReportRows(MappedSnapshot base) {
+        this(base, false);
+    }
+
+    /**
+     * @param base     snapshot mapeado, o null si todos los reportes estan en memoria
+     * @param columnar true para guardar los reportes en memoria por columnas
+     */
+    ReportRows(MappedSnapshot base, boolean columnar) {
+        this.base = base;
+        this.columnar = columnar ? new ColumnarReportStore() : null;
+        this.current = new Snapshot(base, tail, columns(), base == null ? 0 : base.count());
+    }
+
+    /**
+     * Agrega un reporte sin publicarlo todavia. Solo lo llama el escritor.
+     *
+     * @return posicion del reporte
+     */
+    int append(Report r) {
+        Snapshot s = current;
+        if (columnar != null) {
+            columnar.append(r);
+            pending++;
+            return s.size + pending - 1;
+        }
+        int t = s.size - s.baseCount + pending;
+        if (t == tail.length) {
+            tail = Arrays.copyOf(tail, t * 2);
+        }
+        tail[t] = r;
+        pending++;
+        return s.size + pending - 1;
+    }
+
+    /**
+     * Hace visibles para los lectores los reportes agregados con append().
+     */
+    void publish() {
+        if (pending > 0) {
+            current = new Snapshot(base, tail, columns(), current.size + pending);
+            pending = 0;
+        }
+    }
+
+    /**
+     * Publica lo pendiente y, en modo columnar, recorta las columnas al tamaño justo.
+     * Se llama al terminar la carga inicial.
+     */
+    void publishTrimmed() {
+        if (columnar != null) {
+            columnar.trimToSize();
+            current = new Snapshot(base, tail, columns(), current.size + pending);
+            pending = 0;
+        } else {
+            publish();
+        }
+    }
+
+    Snapshot snapshot() {
+        return current;
+    }
+
+    private ColumnarReportStore.Columns columns() {
+        return columnar == null ? null : columnar.columns();
+    }
+
+    /**
+     * Foto inmutable de los reportes. Tambien da acceso a los campos por posicion;
+     * en el snapshot mapeado se leen sin crear el Report.
+     */
+    static final class Snapshot extends AbstractList<Report> implements RandomAccess {
+        private final MappedSnapshot base;
+        private final int baseCount;
+        private final Report[] tail;
+        private final ColumnarReportStore.Columns columns;
+        private final int size;
+
+        private Snapshot(MappedSnapshot base, Report[] tail, ColumnarReportStore.Columns columns, int size) {
+            this.base = base;
+            this.baseCount = base == null ? 0 : base.count();
+            this.tail = tail;
+            this.columns = columns;
+            this.size = size;
+        }
+
+        @Override
+        public Report get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Posicion " + index + " de " + size);
+            }
+            if (index < baseCount) {
+                return base.get(index);
+            }
+            return columns != null ? columns.get(index - baseCount) : tail[index - baseCount];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        String equipmentIdAt(int index) {
+            if (index < baseCount) {
+                return base.equipmentIdAt(index);
+            }
+            return columns != null ? columns.equipmentIdAt(index - baseCount) : tail[index - baseCount].getEquipmentId();
+        }
+
+        Severity severityAt(int index) {
+            if (index < baseCount) {
+                return base.severityAt(index);
+            }
+            return columns != null ? columns.severityAt(index - baseCount) : tail[index - baseCount].getSeverity();
+        }
+
+        long epochDayAt(int index) {
+            if (index < baseCount) {
+                return base.epochDayAt(index);
+            }
+            return columns != null
+                    ? columns.epochDayAt(index - baseCount)
+                    : tail[index - baseCount].getReportDate().toEpochDay();
+        }
+
+        boolean isHardwareAt(int index) {
+            if (index < baseCount) {
+                return base.isHardwareAt(index);
+            }
+            return columns != null ? columns.isHardwareAt(index - baseCount) : tail[index - baseCount] instanceof HardwareReport;
+        }
+
+        /**
+         * Solo para reportes de hardware.
+         */
+        String componentTypeAt(int index) {
+            if (index < baseCount) {
+                return base.componentTypeAt(index);
+            }
+            return columns != null
+                    ? columns.componentTypeAt(index - baseCount)
+                    : ((HardwareReport) tail[index - baseCount]).getComponentType();
+        }
+
+        /**
+         * Solo para reportes de hardware.
+         */
+        boolean needsReplacementAt(int index) {
+            if (index < baseCount) {
+                return base.needsReplacementAt(index);
+            }
+            return columns != null
+                    ? columns.needsReplacementAt(index - baseCount)
+                    : ((HardwareReport) tail[index - baseCount]).isNeedsReplacement();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import model.Report;
+
+/**
+ * Donde se guardan los reportes. ReportManager arma los indices y responde las consultas
+ * igual sobre cualquier implementacion; el store decide donde viven las filas
+ * y como se guardan los reportes nuevos:
+ * - InMemoryReportStore: solo en memoria, no guarda nada en disco
+ * - JournaledReportStore: en memoria (objetos o columnas) con snapshot + journal en disco
+ * - MappedFileReportStore: el snapshot queda mapeado y se lee en el lugar, mas el journal
+ * - PartitionedReportStore: como JournaledReportStore pero con un archivo por mes y retencion
+ *
+ * Salvo load(), que se llama una vez al crear el ReportManager, los metodos los llama
+ * el escritor (con el lock de ReportManager tomado).
+ */
+interface ReportStore {
+
+    /**
+     * Crea el store que corresponde al modo de almacenamiento.
+     *
+     * @param mode       modo elegido por configuracion
+     * @param durability cuando se considera guardado un reporte (no se usa en MEMORY)
+     * @param dataFolder carpeta donde se guardan los archivos (no se usa en MEMORY)
+     */
+    static ReportStore create(ReportManager.StorageMode mode, ReportManager.Durability durability, Path dataFolder) {
+        switch (mode) {
+            case MEMORY:
+                return new InMemoryReportStore();
+            case MAPPED:
+                return new MappedFileReportStore(dataFolder, durability);
+            case PARTITIONED:
+                return PartitionedReportStore.fromProperties(dataFolder, durability);
+            case COLUMNAR:
+                return new JournaledReportStore(dataFolder, true, durability);
+            default:
+                return new JournaledReportStore(dataFolder, false, durability);
+        }
+    }
+
+    /**
+     * Carga los reportes guardados. Los errores de lectura se informan y se sigue
+     * con lo que se pudo leer.
+     *
+     * @return las filas, con todo lo cargado ya publicado
+     */
+    ReportRows load();
+
+    /**
+     * True si los reportes se leen del archivo a medida que se usan. En ese caso
+     * los indices se construyen en la primera consulta y no al arrancar.
+     */
+    boolean readsInPlace();
+
+    /**
+     * Guarda un reporte que ya se agrego a las filas. No espera a que quede en disco
+     * salvo que la durabilidad sea PER_WRITE.
+     *
+     * @param seq posicion del reporte
+     * @return se completa cuando el reporte quedo guardado con la durabilidad configurada,
+     *         o con la IOException si no se pudo guardar
+     */
+    CompletableFuture<Void> append(long seq, Report r);
+
+    /**
+     * Guarda de forma durable un lote que ya se agrego a las filas, con una sola escritura.
+     * Salvo con PER_WRITE no espera: el escritor encola el lote con su lock tomado
+     * (asi las secuencias llegan en orden) y espera el futuro despues de soltarlo.
+     *
+     * @param firstSeq posicion del primer reporte del lote
+     * @return se completa cuando el lote quedo en disco, o con la IOException si no se pudo guardar
+     */
+    CompletableFuture<Void> appendAll(long firstSeq, List<? extends Report> batch);
+
+    /**
+     * Avisa que se publicaron reportes nuevos; el store puede compactar lo guardado.
+     *
+     * @param added cantidad de reportes publicados
+     */
+    void published(int added);
+
+    /**
+     * Termina las escrituras pendientes y libera los archivos.
+     */
+    void close();
+}
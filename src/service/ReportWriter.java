@@ -0,0 +1,210 @@
+package service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import model.HardwareReport;
+import model.Report;
+import model.SoftwareReport;
+
+/**
+ * Escribe reportes de a uno en un formato que se puede leer con otro programa:
+ * - TSV: una fila por reporte separada por tabs, con fila de encabezado
+ * - JSON lines: un objeto por linea, con las mismas claves que acepta ReportImporter
+ *   (asi lo exportado se puede volver a importar)
+ * Las columnas son type, equipmentId, description, severity, reportDate, componentType,
+ * serialNumber, needsReplacement, operatingSystem, softwareName y version; las que no
+ * corresponden al tipo quedan vacias (TSV) o no se escriben (JSON).
+ *
+ * No hace flush por reporte: el que lo usa decide el buffer del Writer.
+ */
+public final class ReportWriter {
+    private static final String[] COLUMNS = {
+            "type", "equipmentId", "description", "severity", "reportDate", "componentType",
+            "serialNumber", "needsReplacement", "operatingSystem", "softwareName", "version"
+    };
+
+    // Formato de salida
+    public enum Format {
+        TSV,
+        JSON_LINES;
+
+        /**
+         * @param name tsv, json o jsonl (sin distinguir mayusculas)
+         * @throws IllegalArgumentException si no es ninguno
+         */
+        public static Format fromName(String name) {
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "tsv":
+                    return TSV;
+                case "json":
+                case "jsonl":
+                    return JSON_LINES;
+                default:
+                    throw new IllegalArgumentException("Formato de salida invalido: " + name + ". Use tsv o json");
+            }
+        }
+    }
+
+    private final Writer out;
+    private final Format format;
+    // Se reusa entre reportes para no crear un StringBuilder por linea
+    private final StringBuilder line = new StringBuilder(256);
+
+    public ReportWriter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Escribe la fila de encabezado (solo en TSV; en JSON lines no hace nada).
+     */
+    public void writeHeader() throws IOException {
+        if (format != Format.TSV) {
+            return;
+        }
+        line.setLength(0);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            line.append(COLUMNS[i]);
+        }
+        out.append(line).append('\n');
+    }
+
+    public void write(Report r) throws IOException {
+        line.setLength(0);
+        boolean hardware = r instanceof HardwareReport;
+        field(0, hardware ? "Hardware" : "Software");
+        field(1, r.getEquipmentId());
+        field(2, r.getDescription());
+        field(3, r.getSeverity().toString());
+        field(4, r.getReportDate().toString());
+        if (hardware) {
+            HardwareReport hw = (HardwareReport) r;
+            field(5, hw.getComponentType());
+            literal(6, Integer.toString(hw.getSerialNumber()));
+            literal(7, hw.isNeedsReplacement() ? "true" : "false");
+            skip(8);
+            skip(9);
+            skip(10);
+        } else {
+            SoftwareReport sw = (SoftwareReport) r;
+            skip(5);
+            skip(6);
+            skip(7);
+            field(8, sw.getOperatingSystem());
+            field(9, sw.getSoftwareName());
+            field(10, sw.getVersion());
+        }
+        if (format == Format.JSON_LINES) {
+            line.append('}');
+        }
+        out.append(line).append('\n');
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void field(int column, String value) {
+        if (format == Format.TSV) {
+            if (column > 0) {
+                line.append('\t');
+            }
+            appendTsv(line, value);
+            return;
+        }
+        line.append(column == 0 ? "{" : ",");
+        appendJson(line, COLUMNS[column]);
+        line.append(':');
+        appendJson(line, value);
+    }
+
+    /**
+     * Numeros y booleanos: en JSON van sin comillas.
+     */
+    private void literal(int column, String value) {
+        if (format == Format.TSV) {
+            field(column, value);
+            return;
+        }
+        line.append(',');
+        appendJson(line, COLUMNS[column]);
+        line.append(':').append(value);
+    }
+
+    private void skip(int column) {
+        if (format == Format.TSV) {
+            line.append('\t');
+        }
+    }
+
+    /**
+     * Agrega el texto a una celda TSV: los tabs y saltos de linea se escriben como \t, \n y \r
+     * (y la barra como \\) para que cada reporte ocupe una sola fila.
+     */
+    public static void appendTsv(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Agrega el texto como string JSON entre comillas, o null.
+     */
+    public static void appendJson(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,108 @@
+package service;
+
+import java.util.Arrays;
+import model.Severity;
+
+/**
+ * Indice por severidad. Como solo hay tres niveles, cada uno tiene:
+ * - una particion con sus posiciones ordenadas por fecha, para queryBySeverity;
+ *   su tamaño es el contador, asi que saber si el nivel existe es O(1)
+ * - un bitmap por posicion, para cruzarlo barato con los filtros de fecha y equipo
+ */
+final class SeverityIndex {
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final PostingList[] partitions = new PostingList[SEVERITIES.length];
+    private final RowBitmap[] bitmaps = new RowBitmap[SEVERITIES.length];
+
+    SeverityIndex() {
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            partitions[i] = new PostingList();
+            bitmaps[i] = new RowBitmap();
+        }
+    }
+
+    void add(Severity severity, long epochDay, int row) {
+        int s = severity.ordinal();
+        bitmaps[s].set(row);
+        partitions[s].add(epochDay, row);
+    }
+
+    /**
+     * Prende el bit de la posicion; la particion se completa despues con addAll.
+     */
+    void mark(Severity severity, int row) {
+        bitmaps[severity.ordinal()].set(row);
+    }
+
+    /**
+     * Agrega un lote de claves a la particion de la severidad con ese ordinal.
+     */
+    void addAll(int ordinal, long[] keys, int n) {
+        partitions[ordinal].addAll(keys, n);
+    }
+
+    /**
+     * Carga masiva: agrega sin ordenar. Hay que llamar a sortAll() al terminar.
+     */
+    void append(Severity severity, long epochDay, int row) {
+        int s = severity.ordinal();
+        bitmaps[s].set(row);
+        partitions[s].append(epochDay, row);
+    }
+
+    void sortAll() {
+        for (PostingList partition : partitions) {
+            partition.sort();
+        }
+    }
+
+    int count(Severity severity) {
+        return partitions[severity.ordinal()].view().size();
+    }
+
+    boolean isPresent(Severity severity) {
+        return count(severity) > 0;
+    }
+
+    /**
+     * @return posiciones con esa severidad, ordenadas por fecha
+     */
+    PostingList.View rows(Severity severity) {
+        return partitions[severity.ordinal()].view();
+    }
+
+    /**
+     * @return true si el reporte en esa posicion tiene la severidad indicada
+     */
+    boolean matches(Severity severity, int row) {
+        return bitmaps[severity.ordinal()].get(row);
+    }
+
+    /**
+     * Bitmap de posiciones que se puede leer sin locks mientras un solo hilo escribe.
+     * El escritor solo prende bits de posiciones nuevas, que ningun lector consulta
+     * todavia; al crecer copia el arreglo y publica el nuevo.
+     */
+    private static final class RowBitmap {
+        private volatile long[] words = new long[16];
+
+        void set(int row) {
+            int w = row >>> 6;
+            long[] current = words;
+            if (w >= current.length) {
+                current = Arrays.copyOf(current, Math.max(w + 1, current.length * 2));
+                current[w] |= 1L << row;
+                words = current;
+            } else {
+                current[w] |= 1L << row;
+            }
+        }
+
+        boolean get(int row) {
+            long[] current = words;
+            int w = row >>> 6;
+            return w < current.length && (current[w] & (1L << row)) != 0;
+        }
+    }
+}
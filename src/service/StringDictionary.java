@@ -0,0 +1,47 @@
+package service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diccionario de textos repetidos: a cada texto distinto le da un id entero.
+ * El id 0 es null. Solo un hilo agrega textos; los lectores usan el arreglo
+ * que devuelve values(), que nunca cambia en las posiciones ya asignadas
+ * (al crecer se copia a un arreglo nuevo).
+ */
+final class StringDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] values = new String[16];
+    private int size = 1;
+
+    /**
+     * @return el id del texto, agregandolo si es nuevo
+     */
+    int idOf(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        ids.put(value, size);
+        return size++;
+    }
+
+    /**
+     * @return los textos por id; sirve para leer todos los ids entregados hasta ahora
+     */
+    String[] values() {
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Indice invertido: cada palabra (ver TextTokenizer) apunta a las posiciones de los
+ * reportes que la contienen, ordenadas por fecha como los demas indices.
+ * Las palabras se guardan ordenadas para poder buscar por prefijo.
+ * Un solo hilo escribe y muchos leen sin locks.
+ */
+final class TextIndex {
+    private static final PostingList.View EMPTY = new PostingList().view();
+
+    private final ConcurrentNavigableMap<String, PostingList> postings = new ConcurrentSkipListMap<>();
+
+    /**
+     * Agrega las palabras de un texto y las publica. Solo lo llama el escritor.
+     */
+    void add(String text, long epochDay, int row) {
+        for (String token : distinctTokens(text)) {
+            postings.computeIfAbsent(token, k -> new PostingList()).add(epochDay, row);
+        }
+    }
+
+    /**
+     * Carga masiva: agrega sin ordenar. Hay que llamar a sortAll() al terminar.
+     */
+    void append(String text, long epochDay, int row) {
+        for (String token : distinctTokens(text)) {
+            postings.computeIfAbsent(token, k -> new PostingList()).append(epochDay, row);
+        }
+    }
+
+    void sortAll() {
+        for (PostingList list : postings.values()) {
+            list.sort();
+        }
+    }
+
+    /**
+     * @param token palabra ya normalizada
+     * @return posiciones de los reportes con esa palabra (vacia si no hay)
+     */
+    PostingList.View rows(String token) {
+        PostingList list = postings.get(token);
+        return list == null ? EMPTY : list.view();
+    }
+
+    /**
+     * @param prefix comienzo de palabra ya normalizado
+     * @return una lista de posiciones por cada palabra que empieza con prefix
+     */
+    List<PostingList.View> rowsWithPrefix(String prefix) {
+        List<PostingList.View> lists = new ArrayList<>();
+        for (PostingList list : postings.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            lists.add(list.view());
+        }
+        return lists;
+    }
+
+    /**
+     * Cada palabra se indexa una vez por reporte aunque aparezca varias veces.
+     */
+    private static List<String> distinctTokens(String text) {
+        List<String> tokens = TextTokenizer.tokens(text);
+        List<String> distinct = new ArrayList<>(tokens.size());
+        for (String t : tokens) {
+            if (!distinct.contains(t)) {
+                distinct.add(t);
+            }
+        }
+        return distinct;
+    }
+}
@@ -0,0 +1,185 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.HardwareReport;
+import model.Report;
+import model.SoftwareReport;
+
+/**
+ * Busqueda de texto ya interpretada. Cada parte tiene que aparecer en el reporte:
+ * - palabra: disco
+ * - prefijo: dañ* (cualquier palabra que empiece con "dan")
+ * - frase entre comillas: "disco dañado" (las palabras seguidas y en ese orden)
+ * Las palabras se normalizan igual que en el indice (ver TextTokenizer).
+ */
+final class TextQuery {
+    private final List<Clause> clauses;
+    private final String text;
+
+    private TextQuery(List<Clause> clauses, String text) {
+        this.clauses = clauses;
+        this.text = text;
+    }
+
+    /**
+     * @param text busqueda escrita por el usuario
+     * @return la busqueda interpretada
+     * @throws IllegalArgumentException si no tiene ninguna palabra
+     */
+    static TextQuery parse(String text) {
+        List<Clause> clauses = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int end;
+            String unit;
+            if (c == '"') {
+                end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = text.length();
+                }
+                unit = text.substring(i + 1, end);
+                end++;
+            } else {
+                end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '"') {
+                    end++;
+                }
+                unit = text.substring(i, end);
+            }
+            Clause clause = Clause.of(unit);
+            if (clause != null) {
+                clauses.add(clause);
+            }
+            i = end;
+        }
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException("La busqueda de texto no tiene palabras");
+        }
+        return new TextQuery(clauses, text.trim());
+    }
+
+    /**
+     * @param details true para buscar tambien en componentType (hardware) o softwareName (software)
+     * @return true si cada parte aparece en la descripcion (o en el otro campo)
+     */
+    boolean matches(Report r, boolean details) {
+        List<String> description = TextTokenizer.tokens(r.getDescription());
+        List<String> detail = details ? TextTokenizer.tokens(detailText(r)) : null;
+        for (Clause clause : clauses) {
+            if (!clause.matches(description) && (detail == null || !clause.matches(detail))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String detailText(Report r) {
+        if (r instanceof HardwareReport) {
+            return ((HardwareReport) r).getComponentType();
+        }
+        return ((SoftwareReport) r).getSoftwareName();
+    }
+
+    /**
+     * Elige las listas del indice con menos posiciones que cubren a todos los resultados:
+     * las de la palabra mas rara de alguna de las partes. Puede haber posiciones repetidas
+     * entre listas y posiciones que despues no cumplen la busqueda completa.
+     *
+     * @param description indice de descripciones
+     * @param detail      indice de componentType/softwareName, o null para no usarlo
+     */
+    List<PostingList.View> candidates(TextIndex description, TextIndex detail) {
+        List<PostingList.View> best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (Clause clause : clauses) {
+            for (int t = 0; t < clause.tokens.length; t++) {
+                List<PostingList.View> lists = lists(description, clause, t);
+                if (detail != null) {
+                    lists.addAll(lists(detail, clause, t));
+                }
+                long size = 0;
+                for (PostingList.View v : lists) {
+                    size += v.size();
+                }
+                if (size < bestSize) {
+                    best = lists;
+                    bestSize = size;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static List<PostingList.View> lists(TextIndex index, Clause clause, int t) {
+        if (clause.prefix[t]) {
+            return index.rowsWithPrefix(clause.tokens[t]);
+        }
+        List<PostingList.View> lists = new ArrayList<>();
+        lists.add(index.rows(clause.tokens[t]));
+        return lists;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Una parte de la busqueda: una o mas palabras seguidas; las marcadas con * son prefijos.
+     */
+    private static final class Clause {
+        final String[] tokens;
+        final boolean[] prefix;
+
+        private Clause(String[] tokens, boolean[] prefix) {
+            this.tokens = tokens;
+            this.prefix = prefix;
+        }
+
+        /**
+         * @return la parte, o null si el texto no tiene palabras
+         */
+        static Clause of(String unit) {
+            List<String> tokens = new ArrayList<>();
+            List<Boolean> prefix = new ArrayList<>();
+            for (String piece : unit.trim().split("\\s+")) {
+                List<String> words = TextTokenizer.tokens(piece);
+                for (int w = 0; w < words.size(); w++) {
+                    tokens.add(words.get(w));
+                    prefix.add(w == words.size() - 1 && piece.endsWith("*"));
+                }
+            }
+            if (tokens.isEmpty()) {
+                return null;
+            }
+            boolean[] prefixes = new boolean[prefix.size()];
+            for (int i = 0; i < prefixes.length; i++) {
+                prefixes[i] = prefix.get(i);
+            }
+            return new Clause(tokens.toArray(new String[0]), prefixes);
+        }
+
+        boolean matches(List<String> words) {
+            for (int start = 0; start + tokens.length <= words.size(); start++) {
+                int t = 0;
+                while (t < tokens.length && matchesWord(t, words.get(start + t))) {
+                    t++;
+                }
+                if (t == tokens.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesWord(int t, String word) {
+            return prefix[t] ? word.startsWith(tokens[t]) : word.equals(tokens[t]);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parte un texto en palabras para la busqueda: minusculas y sin tildes
+ * ("Disco DA\u00d1ADO" y "disco danado" dan las mismas palabras). Las palabras son
+ * las secuencias de letras y digitos; todo lo demas separa.
+ */
+final class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * @param text texto a partir, puede ser null
+     * @return las palabras en orden (con repetidas)
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Pasa una letra a minuscula y le saca la tilde, la dieresis o la virgulilla.
+     * Las letras del espa\u00f1ol se resuelven con la tabla; las demas con Normalizer.
+     */
+    static char fold(char c) {
+        // Las letras van con escapes unicode para que el archivo compile con cualquier encoding
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        switch (c) {
+            case '\u00e1': case '\u00c1': case '\u00e0': case '\u00c0':
+                return 'a';
+            case '\u00e9': case '\u00c9': case '\u00e8': case '\u00c8':
+                return 'e';
+            case '\u00ed': case '\u00cd': case '\u00ec': case '\u00cc':
+                return 'i';
+            case '\u00f3': case '\u00d3': case '\u00f2': case '\u00d2':
+                return 'o';
+            case '\u00fa': case '\u00da': case '\u00f9': case '\u00d9': case '\u00fc': case '\u00dc':
+                return 'u';
+            case '\u00f1': case '\u00d1':
+                return 'n';
+            default:
+                char lower = Character.toLowerCase(c);
+                String decomposed = Normalizer.normalize(String.valueOf(lower), Normalizer.Form.NFD);
+                return decomposed.charAt(0);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Indice de los reportes de software por nombre y version: para cada softwareName
+ * (sin distinguir mayusculas, como EquipmentIndex) las versiones empaquetadas
+ * (ver SoftwareVersion) quedan ordenadas, y cada version apunta a las posiciones de sus
+ * reportes ordenadas por fecha. Un rango de versiones se resuelve con subMap, en tiempo
+ * logaritmico mas una lista por version distinta del rango.
+ * Las versiones que no entran en el long empaquetado no se indexan.
+ * Un solo hilo escribe y muchos leen sin locks.
+ */
+final class VersionIndex {
+    private final Map<String, ConcurrentNavigableMap<Long, PostingList>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Agrega un reporte y lo publica. Solo lo llama el escritor.
+     */
+    void add(String softwareName, long packedVersion, long epochDay, int row) {
+        if (packedVersion >= 0) {
+            list(softwareName, packedVersion).add(epochDay, row);
+        }
+    }
+
+    /**
+     * Carga masiva: agrega sin ordenar. Hay que llamar a sortAll() al terminar.
+     */
+    void append(String softwareName, long packedVersion, long epochDay, int row) {
+        if (packedVersion >= 0) {
+            list(softwareName, packedVersion).append(epochDay, row);
+        }
+    }
+
+    void sortAll() {
+        for (ConcurrentNavigableMap<Long, PostingList> versions : postings.values()) {
+            for (PostingList list : versions.values()) {
+                list.sort();
+            }
+        }
+    }
+
+    /**
+     * @param softwareName nombre del software, o null para todos
+     * @param from         version minima empaquetada, incluida
+     * @param to           version maxima empaquetada, excluida
+     * @return una lista de posiciones por cada version del rango
+     */
+    List<PostingList.View> rows(String softwareName, long from, long to) {
+        List<PostingList.View> lists = new ArrayList<>();
+        if (from >= to) {
+            return lists;
+        }
+        if (softwareName != null) {
+            ConcurrentNavigableMap<Long, PostingList> versions = postings.get(EquipmentIndex.fold(softwareName));
+            if (versions != null) {
+                addRange(lists, versions, from, to);
+            }
+        } else {
+            for (ConcurrentNavigableMap<Long, PostingList> versions : postings.values()) {
+                addRange(lists, versions, from, to);
+            }
+        }
+        return lists;
+    }
+
+    private static void addRange(List<PostingList.View> lists, ConcurrentNavigableMap<Long, PostingList> versions,
+                                 long from, long to) {
+        for (PostingList list : versions.subMap(from, true, to, false).values()) {
+            lists.add(list.view());
+        }
+    }
+
+    private PostingList list(String softwareName, long packedVersion) {
+        return postings.computeIfAbsent(EquipmentIndex.fold(softwareName), k -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(packedVersion, k -> new PostingList());
+    }
+}
@@ -0,0 +1,454 @@
+package ui;
+
+import exceptions.InvalidSeverityException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import model.Report;
+import model.Severity;
+import service.ReportImporter;
+import service.ReportManager;
+import service.ReportPage;
+import service.ReportQuery;
+import service.ReportWriter;
+
+/**
+ * Modo sin menu: ui.Main con argumentos ejecuta un comando y termina.
+ * La salida va a stdout en TSV o JSON lines, sin preguntas ni mensajes de por medio,
+ * asi se puede usar desde scripts; los errores van a stderr.
+ *
+ * <pre>
+ * import &lt;archivo&gt; [--format csv|jsonl]
+ * query [filtros] [--format tsv|json] [--explain]
+ * export [--type hardware|software] [--out archivo] [--format tsv|json]
+ * stats [--by severity|equipment|component|cache] [--format tsv|json]
+ * metrics              cantidad y latencia de cada operacion (util al final de un batch)
+ * batch [archivo]      un comando por linea (sin archivo o con "-" lee de stdin)
+ * serve [--host 127.0.0.1] [--port 8080]   servidor HTTP/JSON (ver ReportServer); publica
+ *                      las metricas por JMX
+ * </pre>
+ *
+ * Filtros de query: --equipment, --severity (Alto,Medio), --from, --to, --type,
+ * --component, --os, --software, --version-from, --version-to, --text, --in-details,
+ * --newest, --offset, --limit, --page. Con --limit, si quedan mas resultados el token
+ * de la pagina siguiente se informa en stderr (next-page&lt;tab&gt;token) para pasarlo en --page;
+ * --offset solo se aplica a la primera pagina.
+ * Opciones generales: --storage memory|heap|mapped|columnar|partitioned y --base carpeta
+ * (donde estan data/ y reports/). Con batch los reportes se cargan una sola vez
+ * para todos los comandos.
+ *
+ * Codigos de salida: 0 bien, 1 error, 2 comando o argumentos invalidos.
+ */
+final class CommandLine {
+    private static final int OUTPUT_BUFFER = 1 << 16;
+    // Opciones que no llevan valor
+    private static final List<String> FLAGS = List.of("explain", "in-details", "newest");
+
+    private final Writer out;
+    private ReportManager manager;
+    private final Map<String, String> general;
+
+    private CommandLine(Writer out, Map<String, String> general) {
+        this.out = out;
+        this.general = general;
+    }
+
+    /**
+     * @param args comando y argumentos
+     * @return codigo de salida
+     */
+    static int run(String[] args) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER);
+        // Los avisos que el resto del programa escribe con System.out van a stderr,
+        // para que stdout tenga solo los datos
+        System.setOut(System.err);
+        CommandLine cli = null;
+        try {
+            Args parsed = Args.parse(List.of(args));
+            cli = new CommandLine(out, parsed.options);
+            return cli.execute(parsed);
+        } catch (IllegalArgumentException | InvalidSeverityException | DateTimeParseException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            return 2;
+        } catch (IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            return 1;
+        } finally {
+            try {
+                out.flush();
+            } catch (IOException ex) {
+                System.err.println("Error al escribir la salida: " + ex.getMessage());
+            }
+            if (cli != null && cli.manager != null) {
+                cli.manager.close();
+            }
+        }
+    }
+
+    private int execute(Args args) throws IOException, InvalidSeverityException {
+        switch (args.command) {
+            case "import":
+                return importFile(args);
+            case "query":
+                return query(args);
+            case "export":
+                return export(args);
+            case "stats":
+                return stats(args);
+            case "metrics":
+                out.append(manager().getMetrics().dump());
+                return 0;
+            case "batch":
+                return batch(args);
+            case "serve":
+                return serve(args);
+            case "help":
+                printUsage();
+                return 0;
+            default:
+                throw new IllegalArgumentException("Comando desconocido: " + args.command + ". Use help");
+        }
+    }
+
+    /**
+     * Crea el ReportManager la primera vez, asi batch carga los reportes una sola vez.
+     */
+    private ReportManager manager() {
+        if (manager == null) {
+            String storage = general.get("storage");
+            String base = general.get("base");
+            if (storage == null && base == null) {
+                manager = new ReportManager();
+            } else {
+                ReportManager.StorageMode mode = ReportManager.StorageMode.valueOf(
+                        (storage == null ? System.getProperty("reports.storage", "heap") : storage)
+                                .trim().toUpperCase(Locale.ROOT));
+                manager = new ReportManager(Paths.get(base == null ? "" : base), mode);
+            }
+        }
+        return manager;
+    }
+
+    private int importFile(Args args) throws IOException {
+        Path file = Paths.get(args.positional(0, "archivo a importar"));
+        if (!Files.isRegularFile(file)) {
+            System.err.println("Error: no existe el archivo " + file);
+            return 1;
+        }
+        ReportImporter importer = new ReportImporter(manager());
+        ReportImporter.Result result = args.options.containsKey("format")
+                ? importer.importFile(file, ReportImporter.Format.fromFileName("." + args.options.get("format")))
+                : importer.importFile(file);
+        out.append("imported\t").append(Long.toString(result.getImported())).append('\n');
+        out.append("failed\t").append(Long.toString(result.getFailed())).append('\n');
+        for (ReportImporter.LineError error : result.getErrors()) {
+            System.err.println(error);
+        }
+        return result.getFailed() > 0 ? 1 : 0;
+    }
+
+    private int query(Args args) throws IOException, InvalidSeverityException {
+        ReportQuery q = QueryOptions.toQuery(args.options);
+        if (args.options.containsKey("explain")) {
+            out.append(manager().explain(q)).append('\n');
+            return 0;
+        }
+        if (q.getLimit() == Integer.MAX_VALUE) {
+            write(manager().iterator(q), args.options);
+            return 0;
+        }
+        ReportPage page = manager().queryPage(q);
+        write(page.getReports().iterator(), args.options);
+        if (page.hasNext()) {
+            System.err.println("next-page\t" + page.getNextPageToken());
+        }
+        return 0;
+    }
+
+    private int export(Args args) throws IOException {
+        ReportQuery.Builder b = ReportQuery.builder();
+        if (args.options.containsKey("type")) {
+            b.type(QueryOptions.reportType(args.options.get("type")));
+        }
+        Iterator<Report> reports = manager().iterator(b.build());
+        String target = args.options.get("out");
+        if (target == null) {
+            write(reports, args.options);
+            return 0;
+        }
+        int count;
+        try (Writer file = Files.newBufferedWriter(Paths.get(target), StandardCharsets.UTF_8)) {
+            count = write(file, reports, args.options);
+        }
+        out.append("exported\t").append(Integer.toString(count)).append('\n');
+        return 0;
+    }
+
+    private int stats(Args args) throws IOException {
+        ReportManager m = manager();
+        Map<String, ?> values;
+        String by = args.options.getOrDefault("by", "summary").toLowerCase(Locale.ROOT);
+        switch (by) {
+            case "summary": {
+                Map<String, Object> summary = new LinkedHashMap<>();
+                Map<Severity, Integer> bySeverity = m.countsBySeverity();
+                int total = 0;
+                for (int count : bySeverity.values()) {
+                    total += count;
+                }
+                summary.put("total", total);
+                for (Map.Entry<Severity, Integer> e : bySeverity.entrySet()) {
+                    summary.put("severity." + e.getKey(), e.getValue());
+                }
+                summary.put("equipment", m.countsByEquipment().size());
+                summary.put("openReplacements", m.countOpenReplacements());
+                LocalDate[] range = total == 0 ? null : m.getDateRange();
+                summary.put("from", range == null ? null : range[0]);
+                summary.put("to", range == null ? null : range[1]);
+                values = summary;
+                break;
+            }
+            case "severity": {
+                Map<String, Integer> counts = new LinkedHashMap<>();
+                m.countsBySeverity().forEach((s, n) -> counts.put(s.toString(), n));
+                values = counts;
+                break;
+            }
+            case "equipment":
+                values = m.countsByEquipment();
+                break;
+            case "component":
+                values = m.countsByComponentType();
+                break;
+            case "cache":
+                values = m.queryCacheStats();
+                break;
+            default:
+                throw new IllegalArgumentException("--by invalido: " + by
+                        + ". Use severity, equipment, component o cache");
+        }
+        StringBuilder line = new StringBuilder();
+        if (format(args.options) == ReportWriter.Format.JSON_LINES) {
+            for (Map.Entry<String, ?> e : values.entrySet()) {
+                line.append(line.length() == 0 ? "{" : ",");
+                ReportWriter.appendJson(line, e.getKey());
+                line.append(':');
+                Object v = e.getValue();
+                if (v instanceof Number) {
+                    line.append(v);
+                } else {
+                    ReportWriter.appendJson(line, v == null ? null : v.toString());
+                }
+            }
+            out.append(line.length() == 0 ? "{" : line).append("}\n");
+        } else {
+            for (Map.Entry<String, ?> e : values.entrySet()) {
+                line.setLength(0);
+                ReportWriter.appendTsv(line, e.getKey());
+                line.append('\t');
+                ReportWriter.appendTsv(line, e.getValue() == null ? "" : e.getValue().toString());
+                out.append(line).append('\n');
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Arranca el servidor HTTP y lo deja andando hasta que se corta el proceso (Ctrl+C);
+     * al cortarlo se detiene el servidor y se cierra el ReportManager.
+     */
+    private int serve(Args args) throws IOException {
+        String host = args.options.getOrDefault("host", "127.0.0.1");
+        int port = QueryOptions.number(args.options.getOrDefault("port", "8080"), "port");
+        ReportManager m = manager();
+        m.getMetrics().registerMBeans();
+        ReportServer server = ReportServer.start(m, new InetSocketAddress(host, port));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            m.close();
+            stopped.countDown();
+        }, "report-http-stop"));
+        System.err.println("Servidor escuchando en http://" + host + ":" + server.getPort() + "/");
+        out.flush();
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ya lo cerro el hook
+        manager = null;
+        return 0;
+    }
+
+    /**
+     * Ejecuta un comando por linea con el mismo ReportManager. Las lineas vacias y las
+     * que empiezan con # se saltan. Un comando con error se informa en stderr y se sigue.
+     */
+    private int batch(Args args) throws IOException {
+        String source = args.positionals.isEmpty() ? "-" : args.positionals.get(0);
+        BufferedReader in = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+        int status = 0;
+        try (in) {
+            String line;
+            long lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                try {
+                    Args command = Args.parse(splitLine(line));
+                    if (command.command.equals("batch") || command.command.equals("serve")) {
+                        throw new IllegalArgumentException(command.command + " no se puede usar dentro de batch");
+                    }
+                    status = Math.max(status, execute(command));
+                } catch (IllegalArgumentException | InvalidSeverityException | DateTimeParseException ex) {
+                    System.err.println("Error en la linea " + lineNumber + ": " + ex.getMessage());
+                    status = Math.max(status, 1);
+                }
+            }
+        }
+        return status;
+    }
+
+    private void write(Iterator<Report> reports, Map<String, String> options) throws IOException {
+        write(out, reports, options);
+    }
+
+    /**
+     * Escribe los reportes a medida que salen del iterador, sin juntarlos en una lista.
+     *
+     * @return cantidad de reportes escritos
+     */
+    private static int write(Writer target, Iterator<Report> reports, Map<String, String> options)
+            throws IOException {
+        ReportWriter writer = new ReportWriter(target, format(options));
+        writer.writeHeader();
+        int count = 0;
+        while (reports.hasNext()) {
+            writer.write(reports.next());
+            count++;
+        }
+        return count;
+    }
+
+    private static ReportWriter.Format format(Map<String, String> options) {
+        return ReportWriter.Format.fromName(options.getOrDefault("format", "tsv"));
+    }
+
+    /**
+     * Separa una linea de batch en argumentos por espacios; "entre comillas" queda junto.
+     */
+    static List<String> splitLine(String line) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        boolean inPart = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inPart = true;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (inPart) {
+                    parts.add(sb.toString());
+                    sb.setLength(0);
+                    inPart = false;
+                }
+            } else {
+                sb.append(c);
+                inPart = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        if (inPart) {
+            parts.add(sb.toString());
+        }
+        return parts;
+    }
+
+    private void printUsage() throws IOException {
+        out.append("Uso: java -cp out ui.Main [comando] [opciones]\n")
+                .append("Sin comando abre el menu.\n")
+                .append("  import <archivo> [--format csv|jsonl]\n")
+                .append("  query [--equipment ID] [--severity Alto,Medio] [--from YYYY-MM-DD] [--to YYYY-MM-DD]\n")
+                .append("        [--type hardware|software] [--component X] [--os X] [--software X]\n")
+                .append("        [--version-from A.B.C] [--version-to A.B.C] [--text \"texto\"] [--in-details]\n")
+                .append("        [--newest] [--offset N] [--limit N] [--page token] [--format tsv|json] [--explain]\n")
+                .append("  export [--type hardware|software] [--out archivo] [--format tsv|json]\n")
+                .append("  stats [--by severity|equipment|component|cache] [--format tsv|json]\n")
+                .append("  metrics           cantidad y latencia de cada operacion de este proceso\n")
+                .append("  batch [archivo]   un comando por linea (sin archivo lee de stdin)\n")
+                .append("  serve [--host 127.0.0.1] [--port 8080]   servidor HTTP/JSON\n")
+                .append("Opciones generales: --storage memory|heap|mapped|columnar|partitioned, --base carpeta\n");
+    }
+
+    /**
+     * Comando, argumentos sueltos y opciones (--nombre valor o --flag).
+     */
+    private static final class Args {
+        String command;
+        final List<String> positionals = new ArrayList<>();
+        final Map<String, String> options = new HashMap<>();
+
+        /**
+         * El comando es el primer argumento que no es opcion; las opciones pueden ir antes o despues.
+         */
+        static Args parse(List<String> args) {
+            Args parsed = new Args();
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                if (!arg.startsWith("--")) {
+                    if (parsed.command == null) {
+                        parsed.command = arg.toLowerCase(Locale.ROOT);
+                    } else {
+                        parsed.positionals.add(arg);
+                    }
+                    continue;
+                }
+                String name = arg.substring(2);
+                if (FLAGS.contains(name)) {
+                    parsed.options.put(name, "true");
+                } else if (i + 1 < args.size()) {
+                    parsed.options.put(name, args.get(++i));
+                } else {
+                    throw new IllegalArgumentException("Falta el valor de " + arg);
+                }
+            }
+            if (parsed.command == null) {
+                throw new IllegalArgumentException("Falta el comando. Use help");
+            }
+            return parsed;
+        }
+
+        String positional(int index, String what) {
+            if (index >= positionals.size()) {
+                throw new IllegalArgumentException("Falta el " + what);
+            }
+            return positionals.get(index);
+        }
+    }
+}
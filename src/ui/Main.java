@@ -4,23 +4,44 @@ import exceptions.InvalidSerialNumberException;
 import exceptions.InvalidSeverityException;
 import exceptions.InvalidSoftwareVersionException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletionException;
 import model.Report;
 import model.Severity;
+import service.ReportImporter;
 import service.ReportManager;
+import service.ReportPage;
+import service.ReportQuery;
 
 /**
  * Programa principal con menu en consola.
  * Permite crear reportes, realizar consultas y generar archivos de texto.
+ * Con argumentos no abre el menu: ejecuta el comando indicado (ver CommandLine).
  */
 public class Main {
     private static final Scanner scanner = new Scanner(System.in);
-    private static final ReportManager manager = new ReportManager();
+    // Resultados que se muestran antes de preguntar si seguir
+    private static final int PAGE_SIZE = 50;
+    // Sin consola (stdin o stdout redirigidos) no se pregunta entre paginas: la respuesta
+    // se comeria la opcion siguiente de un script
+    private static final boolean INTERACTIVE = System.console() != null;
+    // Propiedad del sistema para comprimir con gzip los informes de la opcion 6 (por defecto false)
+    private static final String GZIP_PROPERTY = "reports.export.gzip";
+    private static ReportManager manager;
 
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(CommandLine.run(args));
+        }
+        manager = new ReportManager();
+        // El menu queda abierto un buen rato: las metricas se pueden mirar con jconsole
+        manager.getMetrics().registerMBeans();
         System.out.println("=== Sistema de Gestion de Reportes de Equipos ===");
         boolean exit = false;
         while (!exit) {
@@ -49,11 +70,18 @@ public class Main {
                     exit = true;
                     System.out.println("Saliendo..."); 
                     break;
+                case "8":
+                    importReports();
+                    break;
+                case "9":
+                    searchText();
+                    break;
                 default:
-                    System.out.println("Opcion invalida. Ingresa 1-7.");
+                    System.out.println("Opcion invalida. Ingresa 1-9.");
             }
         }
         scanner.close();
+        manager.close();
     }
 
     private static void printMenu() {
@@ -65,6 +93,8 @@ public class Main {
         System.out.println("5. Consultar reportes desde una fecha");
         System.out.println("6. Generar archivo de informe (txt)");
         System.out.println("7. Salir");
+        System.out.println("8. Importar reportes desde archivo (CSV/JSON lines)");
+        System.out.println("9. Buscar texto en descripciones");
         System.out.print("Opcion: ");
     }
 
@@ -88,14 +118,7 @@ public class Main {
             String componentType = scanner.nextLine().trim();
 
             System.out.print("Numero de serie (entero positivo): ");
-            int serialNumber;
-            try {
-                serialNumber = Integer.parseInt(scanner.nextLine().trim());
-            } catch (NumberFormatException nfe) {
-                System.out.println("Numero de serie invalido. Debe ser entero.");
-                return;
-            }
-            manager.validateSerialNumber(serialNumber);
+            int serialNumber = manager.parseSerialNumber(scanner.nextLine());
 
             System.out.print("Necesita reemplazo? (Si/No): ");
             String needsRepInput = scanner.nextLine().trim().toLowerCase();
@@ -110,8 +133,7 @@ public class Main {
                     serialNumber,
                     needsReplacement
             );
-            manager.addReport(hwReport);
-            System.out.println("Reporte de hardware guardado.");
+            saveReport(hwReport, "hardware");
 
         } catch (InvalidSeverityException | DateTimeParseException | InvalidSerialNumberException ex) {
             System.out.println("Error: " + ex.getMessage());
@@ -155,8 +177,7 @@ public class Main {
                     softwareName,
                     version
             );
-            manager.addReport(swReport);
-            System.out.println("Reporte de software guardado.");
+            saveReport(swReport, "software");
 
         } catch (InvalidSeverityException | DateTimeParseException | InvalidSoftwareVersionException ex) {
             System.out.println("Error: " + ex.getMessage());
@@ -165,6 +186,20 @@ public class Main {
         }
     }
 
+    /**
+     * Agrega el reporte y espera a que quede en disco antes de decir que se guardo:
+     * con durabilidad BATCHED addReport vuelve antes de escribir.
+     */
+    private static void saveReport(Report r, String kind) {
+        try {
+            manager.addReportAsync(r).join();
+            System.out.println("Reporte de " + kind + " guardado.");
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            System.out.println("Error: el reporte se agrego pero no se pudo guardar en disco: " + cause.getMessage());
+        }
+    }
+
     private static void queryByEquipmentId() {
         List<String> resumen = manager.listEquipmentIdAndSeverity();
         if (resumen.isEmpty()) {
@@ -176,13 +211,9 @@ public class Main {
 
         System.out.print("Ingresa ID del equipo a consultar: ");
         String eqId = scanner.nextLine().trim();
-        List<Report> encontrados = manager.queryByEquipmentId(eqId);
-        if (encontrados.isEmpty()) {
-            System.out.println("No se encontraron reportes para " + eqId);
-        } else {
-            System.out.println("Resultados para " + eqId + ":");
-            encontrados.forEach(r -> System.out.println("  - " + r.toString()));
-        }
+        printPages(ReportQuery.builder().equipmentId(eqId),
+                "Resultados para " + eqId + ":",
+                "No se encontraron reportes para " + eqId);
     }
 
     private static void queryBySeverity() {
@@ -198,13 +229,9 @@ public class Main {
         String sevInput = scanner.nextLine().trim();
         try {
             Severity sev = manager.parseSeverity(sevInput);
-            List<Report> encontrados = manager.queryBySeverity(sev);
-            if (encontrados.isEmpty()) {
-                System.out.println("No hay reportes con severidad " + sev.toString());
-            } else {
-                System.out.println("Resultados para severidad " + sev.toString() + ":");
-                encontrados.forEach(r -> System.out.println("  - " + r.toString()));
-            }
+            printPages(ReportQuery.builder().severity(sev),
+                    "Resultados para severidad " + sev.toString() + ":",
+                    "No hay reportes con severidad " + sev.toString());
         } catch (InvalidSeverityException ex) {
             System.out.println("Error: " + ex.getMessage());
         }
@@ -218,13 +245,9 @@ public class Main {
             System.out.print("Ingresa fecha desde (YYYY-MM-DD): ");
             String input = scanner.nextLine().trim();
             LocalDate fromDate = manager.parseDate(input);
-            List<Report> encontrados = manager.queryByDateFrom(fromDate);
-            if (encontrados.isEmpty()) {
-                System.out.println("No hay reportes desde " + fromDate.toString());
-            } else {
-                System.out.println("Resultados desde " + fromDate.toString() + ":");
-                encontrados.forEach(r -> System.out.println("  - " + r.toString()));
-            }
+            printPages(ReportQuery.builder().from(fromDate),
+                    "Resultados desde " + fromDate.toString() + ":",
+                    "No hay reportes desde " + fromDate.toString());
         } catch (IllegalStateException ise) {
             System.out.println("Error: " + ise.getMessage());
         } catch (DateTimeParseException dtpe) {
@@ -235,12 +258,74 @@ public class Main {
     private static void generateReportFile() {
         System.out.print("Tipo de informe a generar (Hardware/Software): ");
         String tipo = scanner.nextLine().trim();
+        // Sin pregunta en el menu: los scripts que le pasan las opciones por stdin siguen igual
+        boolean gzip = Boolean.parseBoolean(System.getProperty(GZIP_PROPERTY, "false").trim());
         try {
-            manager.generateReportFile(tipo);
+            manager.generateReportFile(tipo, gzip);
         } catch (IllegalArgumentException iae) {
             System.out.println("Error: " + iae.getMessage());
         } catch (IOException ioe) {
             System.out.println("Error al crear archivo: " + ioe.getMessage());
         }
     }
+
+    private static void searchText() {
+        System.out.print("Texto a buscar (palabras, prefijo*, \"frase exacta\"): ");
+        String text = scanner.nextLine().trim();
+        try {
+            printPages(ReportQuery.builder().text(text).sort(ReportQuery.SortOrder.NEWEST_FIRST),
+                    "Resultados para " + text + ":",
+                    "No se encontraron reportes con " + text);
+        } catch (IllegalArgumentException iae) {
+            System.out.println("Error: " + iae.getMessage());
+        }
+    }
+
+    /**
+     * Muestra el resultado de a PAGE_SIZE reportes; despues de cada pagina pregunta si seguir.
+     * Si no hay consola o la entrada termino, muestra todo sin preguntar.
+     * Cada pagina se pide con el token de la anterior (ver ReportManager.queryPage).
+     */
+    private static void printPages(ReportQuery.Builder query, String header, String empty) {
+        ReportPage page = manager.queryPage(query.limit(PAGE_SIZE).build());
+        if (page.getReports().isEmpty()) {
+            System.out.println(empty);
+            return;
+        }
+        System.out.println(header);
+        while (true) {
+            page.getReports().forEach(r -> System.out.println("  - " + r.toString()));
+            if (!page.hasNext()) {
+                return;
+            }
+            if (INTERACTIVE) {
+                System.out.print("Enter para ver mas, q para volver al menu: ");
+                if (scanner.hasNextLine() && scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+            page = manager.queryPage(query.pageToken(page.getNextPageToken()).build());
+        }
+    }
+
+    private static void importReports() {
+        System.out.print("Ruta del archivo (.csv o .jsonl): ");
+        Path file = Paths.get(scanner.nextLine().trim());
+        if (!Files.isRegularFile(file)) {
+            System.out.println("No existe el archivo " + file);
+            return;
+        }
+        try {
+            ReportImporter.Result result = new ReportImporter(manager).importFile(file);
+            System.out.println("Reportes importados: " + result.getImported());
+            if (result.getFailed() > 0) {
+                System.out.println("Lineas con errores: " + result.getFailed());
+                result.getErrors().forEach(e -> System.out.println("  - " + e));
+            }
+        } catch (IllegalArgumentException iae) {
+            System.out.println("Error: " + iae.getMessage());
+        } catch (IOException ioe) {
+            System.out.println("Error al importar: " + ioe.getMessage());
+        }
+    }
 }
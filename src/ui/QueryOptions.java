@@ -0,0 +1,80 @@
+package ui;
+
+import exceptions.InvalidSeverityException;
+import java.util.Locale;
+import java.util.Map;
+import service.InputParser;
+import service.ReportQuery;
+
+/**
+ * Arma un ReportQuery a partir de opciones con nombre, las mismas en la linea de comandos
+ * (--severity Alto) y en el servidor HTTP (?severity=Alto):
+ * equipment, severity (Alto,Medio), from, to, type, component, os, software,
+ * version-from, version-to, text, in-details, newest, offset, limit y page
+ * (token de la pagina siguiente, ver ReportPage).
+ * in-details y newest no necesitan valor: alcanza con que esten.
+ */
+final class QueryOptions {
+
+    private QueryOptions() {
+    }
+
+    /**
+     * @throws InvalidSeverityException si alguna severidad no es valida
+     * @throws IllegalArgumentException  si otra opcion no es valida
+     */
+    static ReportQuery toQuery(Map<String, String> o) throws InvalidSeverityException {
+        ReportQuery.Builder b = ReportQuery.builder()
+                .equipmentId(o.get("equipment"))
+                .componentType(o.get("component"))
+                .operatingSystem(o.get("os"))
+                .softwareName(o.get("software"))
+                .versionRange(o.get("version-from"), o.get("version-to"))
+                .text(o.get("text"))
+                .textInDetails(o.containsKey("in-details"));
+        if (o.containsKey("severity")) {
+            for (String s : o.get("severity").split(",")) {
+                b.severity(InputParser.parseSeverity(s));
+            }
+        }
+        if (o.containsKey("from")) {
+            b.from(InputParser.parseDate(o.get("from")));
+        }
+        if (o.containsKey("to")) {
+            b.to(InputParser.parseDate(o.get("to")));
+        }
+        if (o.containsKey("type")) {
+            b.type(reportType(o.get("type")));
+        }
+        if (o.containsKey("newest")) {
+            b.sort(ReportQuery.SortOrder.NEWEST_FIRST);
+        }
+        if (o.containsKey("offset")) {
+            b.offset(number(o.get("offset"), "offset"));
+        }
+        if (o.containsKey("limit")) {
+            b.limit(number(o.get("limit"), "limit"));
+        }
+        b.pageToken(o.get("page"));
+        return b.build();
+    }
+
+    static ReportQuery.ReportType reportType(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "hardware":
+                return ReportQuery.ReportType.HARDWARE;
+            case "software":
+                return ReportQuery.ReportType.SOFTWARE;
+            default:
+                throw new IllegalArgumentException("Tipo invalido: " + value + ". Use hardware o software");
+        }
+    }
+
+    static int number(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " debe ser un numero entero");
+        }
+    }
+}
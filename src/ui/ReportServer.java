@@ -0,0 +1,319 @@
+package ui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exceptions.InvalidSeverityException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Report;
+import model.Severity;
+import service.ReportImporter;
+import service.ReportManager;
+import service.ReportPage;
+import service.ReportQuery;
+import service.ReportWriter;
+
+/**
+ * Servidor HTTP/JSON sobre un ReportManager, con el HttpServer que trae el JDK.
+ *
+ * <pre>
+ * GET  /reports?severity=Alto&amp;from=2025-01-01   consulta (mismos filtros que QueryOptions)
+ * GET  /reports?limit=100&amp;page=token         una pagina; el token de la siguiente va en X-Next-Page
+ * GET  /reports/explain?...                      plan de la consulta
+ * POST /reports                                  ingreso: JSON lines (o CSV con Content-Type text/csv)
+ * GET  /export?type=hardware                     todos los reportes de un tipo
+ * GET  /date-range                               fecha mas antigua y mas reciente
+ * GET  /severities                               severidades presentes y cuantos reportes tiene cada una
+ * GET  /metrics                                  cantidad y latencia de cada operacion (texto)
+ * </pre>
+ *
+ * Los reportes salen como JSON lines (o TSV con format=tsv) en una respuesta chunked,
+ * a medida que se escriben, con las mismas claves que acepta la importacion.
+ * Cada pedido se atiende en un hilo virtual si el JDK los tiene (21 o mas nuevo);
+ * si no, en un pool de hilos que crece segun haga falta. Las consultas no toman locks
+ * (ver ReportManager), asi que muchos clientes pueden consultar a la vez.
+ */
+public final class ReportServer {
+    // Conexiones que esperan ser aceptadas
+    private static final int BACKLOG = 4096;
+    private static final int OUTPUT_BUFFER = 1 << 16;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String JSON_LINES = "application/x-ndjson; charset=utf-8";
+    private static final String TSV = "text/tab-separated-values; charset=utf-8";
+
+    private final ReportManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private ReportServer(ReportManager manager, HttpServer server, ExecutorService executor) {
+        this.manager = manager;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Arranca el servidor. Para elegir un puerto libre usar el puerto 0 y ver getPort().
+     *
+     * @param manager reportes a servir; el servidor no lo cierra
+     * @param address direccion y puerto donde escuchar
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public static ReportServer start(ReportManager manager, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, BACKLOG);
+        ExecutorService executor = newExecutor();
+        ReportServer rs = new ReportServer(manager, server, executor);
+        server.createContext("/reports", exchange -> rs.handle(exchange, rs::reports));
+        server.createContext("/export", exchange -> rs.handle(exchange, rs::export));
+        server.createContext("/date-range", exchange -> rs.handle(exchange, rs::dateRange));
+        server.createContext("/severities", exchange -> rs.handle(exchange, rs::severities));
+        server.createContext("/metrics", exchange -> rs.handle(exchange, rs::metrics));
+        server.createContext("/", exchange -> rs.handle(exchange,
+                e -> rs.respond(e, 404, error("No existe " + e.getRequestURI().getPath()))));
+        server.setExecutor(executor);
+        server.start();
+        return rs;
+    }
+
+    /**
+     * Hilos virtuales con Executors.newVirtualThreadPerTaskExecutor (se busca por reflexion
+     * para compilar tambien con JDK 17); si no estan, un pool de hilos normales.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread t = new Thread(task, "report-http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Deja de aceptar pedidos y espera hasta un segundo a que terminen los que estan en curso.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Handlers
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException, InvalidSeverityException;
+    }
+
+    /**
+     * Atiende un pedido: los parametros invalidos responden 400 y los demas errores 500
+     * (si todavia no se empezo a responder). Siempre cierra el intercambio.
+     */
+    private void handle(HttpExchange exchange, Handler handler) {
+        try {
+            try {
+                handler.handle(exchange);
+            } catch (IllegalArgumentException | InvalidSeverityException | DateTimeParseException ex) {
+                respondIfPending(exchange, 400, ex.getMessage());
+            } catch (RuntimeException ex) {
+                System.err.println("Error al atender " + exchange.getRequestURI() + ": " + ex);
+                respondIfPending(exchange, 500, String.valueOf(ex.getMessage()));
+            }
+        } catch (IOException ex) {
+            // El cliente corto la conexion; no hay a quien avisarle
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respondIfPending(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            respond(exchange, status, error(message));
+        }
+    }
+
+    private void reports(HttpExchange exchange) throws IOException, InvalidSeverityException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (path.equals("/reports/explain") && method.equals("GET")) {
+            ReportQuery q = QueryOptions.toQuery(parameters(exchange));
+            respond(exchange, 200, "{\"plan\":" + json(manager.explain(q)) + "}");
+        } else if (!path.equals("/reports") && !path.equals("/reports/")) {
+            respond(exchange, 404, error("No existe " + path));
+        } else if (method.equals("GET")) {
+            Map<String, String> params = parameters(exchange);
+            ReportQuery q = QueryOptions.toQuery(params);
+            if (q.getLimit() == Integer.MAX_VALUE) {
+                stream(exchange, manager.iterator(q), params);
+                return;
+            }
+            ReportPage page = manager.queryPage(q);
+            if (page.hasNext()) {
+                exchange.getResponseHeaders().set("X-Next-Page", page.getNextPageToken());
+            }
+            stream(exchange, page.getReports().iterator(), params);
+        } else if (method.equals("POST")) {
+            ingest(exchange);
+        } else {
+            respond(exchange, 405, error("Metodo no permitido: " + method));
+        }
+    }
+
+    private void ingest(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        ReportImporter.Format format = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv")
+                ? ReportImporter.Format.CSV
+                : ReportImporter.Format.JSON_LINES;
+        ReportImporter.Result result;
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            result = new ReportImporter(manager, 1).importFrom(in, format);
+        } catch (IOException ex) {
+            respond(exchange, 500, error("Error al guardar: " + ex.getMessage()));
+            return;
+        }
+        StringBuilder body = new StringBuilder("{\"imported\":").append(result.getImported())
+                .append(",\"failed\":").append(result.getFailed()).append(",\"errors\":[");
+        List<ReportImporter.LineError> errors = result.getErrors();
+        for (int i = 0; i < errors.size(); i++) {
+            body.append(i == 0 ? "" : ",").append("{\"line\":").append(errors.get(i).getLine())
+                    .append(",\"message\":").append(json(errors.get(i).getMessage())).append('}');
+        }
+        body.append("]}");
+        // 400 solo si no se pudo guardar nada; con errores parciales el detalle va en errors
+        respond(exchange, result.getImported() == 0 && result.getFailed() > 0 ? 400 : 200, body.toString());
+    }
+
+    private void export(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, error("Metodo no permitido: " + exchange.getRequestMethod()));
+            return;
+        }
+        Map<String, String> params = parameters(exchange);
+        ReportQuery.Builder b = ReportQuery.builder();
+        if (params.containsKey("type")) {
+            b.type(QueryOptions.reportType(params.get("type")));
+        }
+        stream(exchange, manager.iterator(b.build()), params);
+    }
+
+    private void dateRange(HttpExchange exchange) throws IOException {
+        LocalDate[] range;
+        try {
+            range = manager.getDateRange();
+        } catch (IllegalStateException empty) {
+            respond(exchange, 200, "{\"from\":null,\"to\":null}");
+            return;
+        }
+        respond(exchange, 200, "{\"from\":\"" + range[0] + "\",\"to\":\"" + range[1] + "\"}");
+    }
+
+    private void severities(HttpExchange exchange) throws IOException {
+        StringBuilder body = new StringBuilder("{");
+        for (Severity s : manager.listSeverityLevelsPresent()) {
+            body.append(body.length() == 1 ? "" : ",").append(json(s.toString())).append(':')
+                    .append(manager.countBySeverity(s));
+        }
+        respond(exchange, 200, body.append('}').toString());
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        byte[] body = manager.getMetrics().dump().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Respuestas
+
+    /**
+     * Escribe los reportes de a uno en una respuesta chunked (largo 0 en sendResponseHeaders),
+     * a medida que los entrega el iterador.
+     */
+    private void stream(HttpExchange exchange, Iterator<Report> reports, Map<String, String> params)
+            throws IOException {
+        ReportWriter.Format format = ReportWriter.Format.fromName(params.getOrDefault("format", "json"));
+        exchange.getResponseHeaders().set("Content-Type", format == ReportWriter.Format.TSV ? TSV : JSON_LINES);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), OUTPUT_BUFFER)) {
+            ReportWriter writer = new ReportWriter(out, format);
+            writer.writeHeader();
+            while (reports.hasNext()) {
+                writer.write(reports.next());
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + json(message) + "}";
+    }
+
+    private static String json(String value) {
+        StringBuilder sb = new StringBuilder();
+        ReportWriter.appendJson(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * Parametros del query string ya decodificados. Un parametro sin valor queda como "true".
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "true" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+}
@@ -0,0 +1,44 @@
+package service;
+
+/**
+ * Corre todas las pruebas en orden. Termina con codigo 1 si alguna falla.
+ *
+ * <pre>
+ * javac -encoding UTF-8 -d out $(find src -name '*.java')
+ * javac -encoding UTF-8 -cp out -d out-test $(find test -name '*.java')
+ * java -cp out:out-test service.AllTests
+ * </pre>
+ */
+public final class AllTests {
+
+    private interface Test {
+        void run() throws Exception;
+    }
+
+    private AllTests() {
+    }
+
+    public static void main(String[] args) {
+        Test[] tests = {
+                () -> JournalReplayTest.main(args),
+                () -> SnapshotReadErrorTest.main(args),
+                () -> RetentionArchiveTest.main(args),
+                () -> DurabilityTest.main(args),
+                () -> QueryPlannerTest.main(args),
+                () -> PageTokenTest.main(args),
+                () -> CacheKeyTest.main(args)
+        };
+        int failed = 0;
+        for (Test test : tests) {
+            try {
+                test.run();
+            } catch (Throwable e) {
+                failed++;
+                System.out.println("FALLA: " + e);
+                e.printStackTrace();
+            }
+        }
+        System.out.println(failed == 0 ? "Todas las pruebas pasaron" : failed + " pruebas fallaron");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,43 @@
+package service;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+
+/**
+ * Consultas distintas no comparten resultado en la cache aunque sus textos tengan el
+ * separador de la clave: sistema operativo "a|b" con software "c" contra sistema
+ * operativo "a" con software "b|c".
+ */
+public final class CacheKeyTest {
+
+    public static void main(String[] args) throws Exception {
+        ReportQuery a = ReportQuery.builder().operatingSystem("a|b").softwareName("c").build();
+        ReportQuery b = ReportQuery.builder().operatingSystem("a").softwareName("b|c").build();
+        TestSupport.check(!a.cacheKey().equals(b.cacheKey()), "misma clave para " + a + " y " + b);
+        ReportQuery c = ReportQuery.builder().softwareName("").build();
+        ReportQuery d = ReportQuery.builder().build();
+        TestSupport.check(!c.cacheKey().equals(d.cacheKey()), "misma clave para " + c + " y " + d);
+
+        Path base = TestSupport.tempFolder("cache-key-test");
+        ReportManager manager = new ReportManager(base, ReportManager.StorageMode.MEMORY);
+        try {
+            manager.addReport(new SoftwareReport("EQ-1", "pipe", Severity.LOW, LocalDate.of(2024, 2, 1), "a|b", "c", "1.0.0"));
+            manager.addReport(new HardwareReport("EQ-2", "otro", Severity.LOW, LocalDate.of(2024, 2, 2), "Disco", 7, false));
+            List<Report> first = manager.query(a);
+            List<Report> second = manager.query(b);
+            TestSupport.check(first.size() == 1, "se esperaba 1 reporte para " + a + " y hay " + first.size());
+            TestSupport.check(second.isEmpty(), "se esperaban 0 reportes para " + b + " y hay " + second.size());
+            TestSupport.check(manager.query(d).size() == 2 && manager.query(c).isEmpty(),
+                    "softwareName vacio y sin softwareName dieron el mismo resultado");
+        } finally {
+            manager.close();
+            TestSupport.deleteTree(base);
+        }
+        System.out.println("CacheKeyTest ok");
+    }
+}
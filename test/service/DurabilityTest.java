@@ -0,0 +1,93 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+
+/**
+ * Con BATCHED y PER_WRITE el futuro de un reporte (o de un lote) se completa recien
+ * despues del fsync del journal. El fsync se detiene en una barrera para ver que
+ * mientras no termina ningun futuro esta completo.
+ */
+public final class DurabilityTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        for (ReportManager.Durability durability : new ReportManager.Durability[]{
+                ReportManager.Durability.BATCHED, ReportManager.Durability.PER_WRITE}) {
+            run(durability, false);
+            run(durability, true);
+        }
+        System.out.println("DurabilityTest ok");
+    }
+
+    private static void run(ReportManager.Durability durability, boolean batch) throws Exception {
+        Path folder = TestSupport.tempFolder("durability-test");
+        GatedJournal journal = new GatedJournal(folder);
+        GroupCommit commits = new GroupCommit(journal, durability);
+        try {
+            journal.rotate(0);
+            // Con PER_WRITE el fsync se hace en el hilo que agrega, asi que se agrega desde otro
+            CompletableFuture<CompletableFuture<Void>> submitted = CompletableFuture.supplyAsync(() -> batch
+                    ? commits.appendAll(0, List.of(report(0), report(1), report(2)))
+                    : commits.append(0, report(0)));
+            TestSupport.check(journal.entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                    durability + ": no se llego al fsync");
+            Thread.sleep(50);
+            boolean doneBeforeFsync = submitted.isDone() && submitted.get().isDone();
+            TestSupport.check(!doneBeforeFsync, durability + (batch ? " (lote)" : "")
+                    + ": el futuro se completo antes de que termine el fsync");
+            journal.gate.countDown();
+            submitted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            TestSupport.check(journal.forced, durability + ": el futuro se completo sin fsync");
+            // Lo confirmado se lee del journal
+            List<Report> replayed = new ArrayList<>();
+            journal.replay(0, replayed::add);
+            TestSupport.check(replayed.size() == (batch ? 3 : 1),
+                    durability + ": se confirmaron reportes que no estan en el journal");
+        } finally {
+            journal.gate.countDown();
+            commits.close();
+            journal.close();
+            TestSupport.deleteTree(folder);
+        }
+    }
+
+    private static Report report(int i) {
+        return new HardwareReport("EQ-1", "reporte " + i, Severity.HIGH, LocalDate.of(2024, 5, 1), "Disco", 1 + i, true);
+    }
+
+    /**
+     * Journal cuyo fsync espera a que se abra la barrera.
+     */
+    private static final class GatedJournal extends ReportJournal {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        volatile boolean forced;
+
+        GatedJournal(Path folder) {
+            super(folder);
+        }
+
+        @Override
+        void force() throws IOException {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("fsync interrumpido", e);
+            }
+            super.force();
+            forced = true;
+        }
+    }
+}
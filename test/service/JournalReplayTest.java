@@ -0,0 +1,110 @@
+package service;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+
+/**
+ * Replay del journal cuando el ultimo registro quedo cortado (corte de luz a mitad de una
+ * escritura): se recuperan los registros completos, el final se descarta del archivo
+ * y lo que se escribe despues se lee sin huecos.
+ */
+public final class JournalReplayTest {
+
+    public static void main(String[] args) throws Exception {
+        cutRecord();
+        garbageAfterLastRecord();
+        System.out.println("JournalReplayTest ok");
+    }
+
+    private static void cutRecord() throws Exception {
+        Path folder = TestSupport.tempFolder("journal-test");
+        try {
+            ReportJournal journal = write(folder, 10);
+            Path segment = folder.resolve("databaseReports.0.journal");
+            long fullSize = Files.size(segment);
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                ch.truncate(fullSize - 5);
+            }
+            List<Report> replayed = new ArrayList<>();
+            long next = journal.replay(0, replayed::add);
+            TestSupport.check(next == 9, "se esperaban 9 registros completos y la secuencia siguiente es " + next);
+            checkDescriptions(replayed, 0, 9);
+            TestSupport.check(Files.size(segment) < fullSize - 5, "el registro cortado sigue en el segmento");
+
+            // Como hace el store al arrancar: segmento nuevo desde la secuencia recuperada
+            journal.rotate(next);
+            journal.append(next, report(next));
+            journal.force();
+            journal.close();
+            replayed.clear();
+            next = journal.replay(0, replayed::add);
+            TestSupport.check(next == 10, "despues de escribir de nuevo se esperaban 10 registros y hay " + next);
+            checkDescriptions(replayed, 0, 10);
+
+            // Lo que ya esta en el snapshot no se entrega de nuevo
+            replayed.clear();
+            journal.replay(6, replayed::add);
+            checkDescriptions(replayed, 6, 4);
+        } finally {
+            TestSupport.deleteTree(folder);
+        }
+    }
+
+    private static void garbageAfterLastRecord() throws Exception {
+        Path folder = TestSupport.tempFolder("journal-test");
+        try {
+            ReportJournal journal = write(folder, 5);
+            Path segment = folder.resolve("databaseReports.0.journal");
+            // Encabezado de un registro de 100 bytes con el crc equivocado y sin los datos completos
+            ByteBuffer garbage = ByteBuffer.allocate(40);
+            garbage.putInt(100).putLong(5).putInt(12345);
+            garbage.flip();
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ch.write(garbage);
+            }
+            List<Report> replayed = new ArrayList<>();
+            long next = journal.replay(0, replayed::add);
+            TestSupport.check(next == 5, "se esperaban 5 registros y la secuencia siguiente es " + next);
+            checkDescriptions(replayed, 0, 5);
+        } finally {
+            TestSupport.deleteTree(folder);
+        }
+    }
+
+    /**
+     * Escribe count registros en el segmento 0 y cierra el journal.
+     */
+    private static ReportJournal write(Path folder, int count) throws Exception {
+        ReportJournal journal = new ReportJournal(folder);
+        journal.rotate(0);
+        for (int i = 0; i < count; i++) {
+            journal.append(i, report(i));
+        }
+        journal.force();
+        journal.close();
+        return journal;
+    }
+
+    private static Report report(long seq) {
+        return new HardwareReport("EQ-1", "registro " + seq, Severity.MEDIUM,
+                LocalDate.of(2024, 3, 1).plusDays(seq), "Disco", 1 + (int) seq, false);
+    }
+
+    private static void checkDescriptions(List<Report> replayed, int first, int count) {
+        TestSupport.check(replayed.size() == count, "se esperaban " + count + " reportes y hay " + replayed.size());
+        for (int i = 0; i < count; i++) {
+            String expected = "registro " + (first + i);
+            TestSupport.check(replayed.get(i).getDescription().equals(expected),
+                    "en la posicion " + i + " se esperaba '" + expected + "' y hay '" + replayed.get(i).getDescription() + "'");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import model.Report;
+import model.Severity;
+
+/**
+ * Paginas con pageToken: juntas dan el mismo resultado que query(), y si se agregan
+ * reportes entre una pagina y la siguiente no se repite ni se saltea ninguno de los anteriores.
+ */
+public final class PageTokenTest {
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final int DAYS = 120;
+
+    public static void main(String[] args) throws Exception {
+        for (ReportManager.StorageMode mode : ReportManager.StorageMode.values()) {
+            run(mode);
+        }
+        System.out.println("PageTokenTest ok");
+    }
+
+    private static void run(ReportManager.StorageMode mode) throws Exception {
+        Path base = TestSupport.tempFolder("page-test");
+        ReportManager manager = new ReportManager(base, mode, ReportManager.Durability.BATCHED);
+        try {
+            Random random = new Random(5);
+            int number = 0;
+            List<Report> batch = new ArrayList<>();
+            for (; number < 3000; number++) {
+                batch.add(TestSupport.randomReport(random, number, START, DAYS));
+            }
+            manager.addReports(batch);
+            List<Supplier<ReportQuery.Builder>> queries = new ArrayList<>();
+            queries.add(ReportQuery::builder);
+            queries.add(() -> ReportQuery.builder().severity(Severity.HIGH));
+            queries.add(() -> ReportQuery.builder().equipmentId("EQ-3").from(START.plusDays(10)));
+            queries.add(() -> ReportQuery.builder().type(ReportQuery.ReportType.SOFTWARE).to(START.plusDays(60)));
+            // El offset se salta una sola vez: las paginas siguientes repiten la consulta con el token
+            queries.add(() -> ReportQuery.builder().type(ReportQuery.ReportType.HARDWARE).offset(40));
+            for (ReportQuery.SortOrder order : ReportQuery.SortOrder.values()) {
+                for (Supplier<ReportQuery.Builder> query : queries) {
+                    ReportQuery q = query.get().sort(order).build();
+                    List<String> expected = descriptions(manager.query(q));
+                    List<String> paged = new ArrayList<>();
+                    String token = null;
+                    do {
+                        ReportPage page = manager.queryPage(query.get().sort(order).limit(37).pageToken(token).build());
+                        TestSupport.check(page.getReports().size() <= 37, mode + ": pagina con mas de 37 reportes");
+                        paged.addAll(descriptions(page.getReports()));
+                        token = page.getNextPageToken();
+                    } while (token != null);
+                    TestSupport.check(paged.equals(expected), mode + " " + q + ": las paginas tienen "
+                            + paged.size() + " reportes y query() " + expected.size());
+                }
+
+                // Reportes nuevos entre paginas
+                List<String> before = descriptions(manager.query(ReportQuery.builder().sort(order).build()));
+                Set<String> seen = new HashSet<>();
+                String token = null;
+                do {
+                    ReportPage page = manager.queryPage(ReportQuery.builder().sort(order).limit(250).pageToken(token).build());
+                    for (Report r : page.getReports()) {
+                        TestSupport.check(seen.add(r.getDescription()), mode + " " + order + ": "
+                                + r.getDescription() + " aparece en dos paginas");
+                    }
+                    for (int i = 0; i < 20; i++, number++) {
+                        manager.addReport(TestSupport.randomReport(random, number, START, DAYS));
+                    }
+                    token = page.getNextPageToken();
+                } while (token != null);
+                TestSupport.check(seen.containsAll(before), mode + " " + order
+                        + ": faltan reportes que existian antes de la primera pagina");
+            }
+        } finally {
+            manager.close();
+            TestSupport.deleteTree(base);
+        }
+    }
+
+    private static List<String> descriptions(List<Report> reports) {
+        List<String> result = new ArrayList<>(reports.size());
+        for (Report r : reports) {
+            result.add(r.getDescription());
+        }
+        return result;
+    }
+}
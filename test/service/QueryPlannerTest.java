@@ -0,0 +1,199 @@
+package service;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+
+/**
+ * Consultas al azar en todos los modos de almacenamiento: el resultado de query()
+ * (que usa el indice mas selectivo) es el mismo que filtrar todos los reportes uno por uno.
+ */
+public final class QueryPlannerTest {
+    private static final LocalDate START = LocalDate.of(2023, 1, 1);
+    private static final int DAYS = 700;
+    // Los nombres se buscan sin distinguir mayusculas; Teclado no aparece en ningun reporte
+    private static final String[] COMPONENTS = {"Disco", "pantalla", "MEMORIA", "Teclado"};
+    private static final String[] SYSTEMS = {"Linux", "windows"};
+    private static final String[] PROGRAMS = {"Office", "chrome", "Java"};
+
+    public static void main(String[] args) throws Exception {
+        for (ReportManager.StorageMode mode : ReportManager.StorageMode.values()) {
+            run(mode);
+        }
+        System.out.println("QueryPlannerTest ok");
+    }
+
+    private static void run(ReportManager.StorageMode mode) throws Exception {
+        Path base = TestSupport.tempFolder("planner-test");
+        try {
+            Random random = new Random(11);
+            List<Report> all = new ArrayList<>();
+            for (int i = 0; i < 13_000; i++) {
+                all.add(TestSupport.randomReport(random, i, START, DAYS));
+            }
+            ReportManager manager = new ReportManager(base, mode, ReportManager.Durability.BATCHED);
+            manager.addReports(all.subList(0, 12_000));
+            if (mode != ReportManager.StorageMode.MEMORY) {
+                // Al abrir de nuevo se escribe el snapshot (o los segmentos) y en el arranque
+                // siguiente se carga de ahi: parte de los reportes sale del snapshot y parte del journal
+                manager.close();
+                new ReportManager(base, mode, ReportManager.Durability.BATCHED).close();
+                manager = new ReportManager(base, mode, ReportManager.Durability.BATCHED);
+            }
+            for (Report r : all.subList(12_000, all.size())) {
+                manager.addReport(r);
+            }
+            for (int i = 0; i < 300; i++) {
+                ReportQuery q = randomQuery(random);
+                List<String> expected = bruteForce(all, q);
+                List<String> actual = describe(manager.query(q));
+                TestSupport.check(actual.equals(expected), mode + " " + q + ": se esperaban "
+                        + expected.size() + " reportes y query() devolvio " + actual.size());
+            }
+            manager.close();
+        } finally {
+            TestSupport.deleteTree(base);
+        }
+    }
+
+    private static ReportQuery randomQuery(Random random) {
+        ReportQuery.Builder b = ReportQuery.builder();
+        if (random.nextInt(3) == 0) {
+            String id = "EQ-" + random.nextInt(10);
+            b.equipmentId(random.nextBoolean() ? id : id.toLowerCase(Locale.ROOT));
+        }
+        if (random.nextInt(3) == 0) {
+            Set<Severity> severities = EnumSet.noneOf(Severity.class);
+            for (Severity s : Severity.values()) {
+                if (random.nextBoolean()) {
+                    severities.add(s);
+                }
+            }
+            b.severity(severities.toArray(new Severity[0]));
+        }
+        // Rango de fechas: ninguna, una o las dos puntas, con from <= to
+        int first = random.nextInt(DAYS);
+        int last = first + random.nextInt(DAYS - first);
+        if (random.nextInt(2) == 0) {
+            b.from(START.plusDays(first));
+        }
+        if (random.nextInt(2) == 0) {
+            b.to(START.plusDays(last));
+        }
+        switch (random.nextInt(6)) {
+            case 0:
+                b.type(ReportQuery.ReportType.HARDWARE);
+                break;
+            case 1:
+                b.type(ReportQuery.ReportType.SOFTWARE);
+                break;
+            case 2:
+                b.componentType(COMPONENTS[random.nextInt(COMPONENTS.length)].toUpperCase(Locale.ROOT));
+                break;
+            case 3:
+                b.operatingSystem(SYSTEMS[random.nextInt(SYSTEMS.length)]);
+                break;
+            case 4:
+                b.softwareName(PROGRAMS[random.nextInt(PROGRAMS.length)]);
+                if (random.nextBoolean()) {
+                    b.versionRange("1." + random.nextInt(12) + ".0", (2 + random.nextInt(2)) + ".0.0");
+                }
+                break;
+            default:
+                break;
+        }
+        if (random.nextBoolean()) {
+            b.sort(ReportQuery.SortOrder.NEWEST_FIRST);
+        }
+        return b.build();
+    }
+
+    /**
+     * Filtra todos los reportes con los criterios de la consulta y los ordena por fecha;
+     * con la misma fecha quedan en orden de llegada (al reves con NEWEST_FIRST).
+     */
+    private static List<String> bruteForce(List<Report> all, ReportQuery q) {
+        List<Report> found = new ArrayList<>();
+        for (Report r : all) {
+            if (matches(r, q)) {
+                found.add(r);
+            }
+        }
+        found.sort(Comparator.comparing(Report::getReportDate));
+        List<String> result = describe(found);
+        if (q.getSortOrder() == ReportQuery.SortOrder.NEWEST_FIRST) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    private static boolean matches(Report r, ReportQuery q) {
+        if (q.getEquipmentId() != null && !q.getEquipmentId().equalsIgnoreCase(r.getEquipmentId())) {
+            return false;
+        }
+        if (!q.getSeverities().isEmpty() && !q.getSeverities().contains(r.getSeverity())) {
+            return false;
+        }
+        if (q.getFrom() != null && r.getReportDate().isBefore(q.getFrom())) {
+            return false;
+        }
+        if (q.getTo() != null && r.getReportDate().isAfter(q.getTo())) {
+            return false;
+        }
+        if (q.getType() == ReportQuery.ReportType.HARDWARE && !(r instanceof HardwareReport)
+                || q.getType() == ReportQuery.ReportType.SOFTWARE && !(r instanceof SoftwareReport)) {
+            return false;
+        }
+        if (q.getComponentType() != null && !(r instanceof HardwareReport
+                && ((HardwareReport) r).getComponentType().equalsIgnoreCase(q.getComponentType()))) {
+            return false;
+        }
+        if (q.getOperatingSystem() != null && !(r instanceof SoftwareReport
+                && ((SoftwareReport) r).getOperatingSystem().equalsIgnoreCase(q.getOperatingSystem()))) {
+            return false;
+        }
+        if (q.getSoftwareName() != null && !(r instanceof SoftwareReport
+                && ((SoftwareReport) r).getSoftwareName().equalsIgnoreCase(q.getSoftwareName()))) {
+            return false;
+        }
+        if (q.getVersionFrom() != null) {
+            String version = ((SoftwareReport) r).getVersion();
+            return compareVersions(version, q.getVersionFrom()) >= 0 && compareVersions(version, q.getVersionTo()) < 0;
+        }
+        return true;
+    }
+
+    /**
+     * Compara dos versiones A.B.C como numeros, parte por parte.
+     */
+    private static int compareVersions(String a, String b) {
+        String[] x = a.split("\\.");
+        String[] y = b.split("\\.");
+        for (int i = 0; i < 3; i++) {
+            int c = Integer.compare(Integer.parseInt(x[i]), Integer.parseInt(y[i]));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static List<String> describe(List<Report> reports) {
+        List<String> result = new ArrayList<>(reports.size());
+        for (Report r : reports) {
+            result.add(r.getDescription() + " " + r);
+        }
+        return result;
+    }
+}
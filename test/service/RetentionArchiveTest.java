@@ -0,0 +1,90 @@
+package service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import model.Report;
+
+/**
+ * Retencion del modo PARTITIONED cuando no se puede archivar (data/archive es un archivo):
+ * los meses viejos siguen en data/segments y se cargan. Cuando se puede archivar,
+ * se mueven y dejan de cargarse, sin perder ninguno.
+ */
+public final class RetentionArchiveTest {
+    private static final int RETENTION_MONTHS = 12;
+
+    public static void main(String[] args) throws Exception {
+        Path base = TestSupport.tempFolder("retention-test");
+        Path data = base.resolve("data");
+        try {
+            Random random = new Random(3);
+            LocalDate start = LocalDate.now().minusMonths(30);
+            List<Report> reports = new ArrayList<>();
+            for (int i = 0; i < 6000; i++) {
+                reports.add(TestSupport.randomReport(random, i, start, 900));
+            }
+            YearMonth limit = YearMonth.now().minusMonths(RETENTION_MONTHS);
+            int kept = 0;
+            for (Report r : reports) {
+                if (!YearMonth.from(r.getReportDate()).isBefore(limit)) {
+                    kept++;
+                }
+            }
+
+            ReportManager manager = open(base, 0);
+            manager.addReports(reports);
+            manager.close();
+            // Al abrir de nuevo se reparte el journal en segmentos
+            open(base, 0).close();
+            long segments = count(data.resolve(PartitionedReportStore.SEGMENTS_FOLDER));
+
+            Files.write(data.resolve(PartitionedReportStore.ARCHIVE_FOLDER), new byte[]{1});
+            for (int i = 0; i < 2; i++) {
+                manager = open(base, RETENTION_MONTHS);
+                int loaded = total(manager);
+                manager.close();
+                TestSupport.check(loaded == reports.size(),
+                        "sin poder archivar se esperaban " + reports.size() + " reportes y hay " + loaded);
+                TestSupport.check(count(data.resolve(PartitionedReportStore.SEGMENTS_FOLDER)) == segments,
+                        "se borraron segmentos que no se pudieron archivar");
+            }
+
+            Files.delete(data.resolve(PartitionedReportStore.ARCHIVE_FOLDER));
+            manager = open(base, RETENTION_MONTHS);
+            int loaded = total(manager);
+            manager.close();
+            TestSupport.check(loaded == kept, "con retencion se esperaban " + kept + " reportes y hay " + loaded);
+            long archived = count(data.resolve(PartitionedReportStore.ARCHIVE_FOLDER));
+            long left = count(data.resolve(PartitionedReportStore.SEGMENTS_FOLDER));
+            TestSupport.check(archived > 0 && archived + left == segments,
+                    "se esperaban " + segments + " segmentos entre archivados y vigentes y hay " + archived + " + " + left);
+        } finally {
+            TestSupport.deleteTree(base);
+        }
+        System.out.println("RetentionArchiveTest ok");
+    }
+
+    private static ReportManager open(Path base, int retentionMonths) {
+        Path data = base.resolve("data");
+        return new ReportManager(base,
+                new PartitionedReportStore(data, ReportManager.Durability.BATCHED, retentionMonths, true));
+    }
+
+    private static int total(ReportManager manager) {
+        return manager.query(ReportQuery.builder().build()).size();
+    }
+
+    /**
+     * @return archivos de segmentos en la carpeta, sin contar el manifest
+     */
+    private static long count(Path folder) throws Exception {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("reports-")).count();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+
+/**
+ * Snapshot que no se puede leer (archivo cortado): no se carga nada de el, los reportes
+ * nuevos se siguen guardando en el journal, no se escribe otra generacion ni se borra nada,
+ * y al reponer el archivo se cargan todos.
+ */
+public final class SnapshotReadErrorTest {
+    private static final int SAVED = 12_000;
+
+    public static void main(String[] args) throws Exception {
+        for (ReportManager.StorageMode mode : new ReportManager.StorageMode[]{
+                ReportManager.StorageMode.HEAP, ReportManager.StorageMode.COLUMNAR, ReportManager.StorageMode.MAPPED}) {
+            run(mode);
+        }
+        System.out.println("SnapshotReadErrorTest ok");
+    }
+
+    private static void run(ReportManager.StorageMode mode) throws Exception {
+        Path base = TestSupport.tempFolder("snapshot-test");
+        Path data = base.resolve("data");
+        try {
+            ReportManager manager = open(base, mode);
+            manager.addReports(batch("A", SAVED));
+            manager.close();
+            // Al abrir de nuevo el journal pasa el umbral y se escribe una generacion
+            open(base, mode).close();
+            String pointer = readPointer(data);
+            Path current = data.resolve(pointer);
+            byte[] good = Files.readAllBytes(current);
+            byte[] cut = Arrays.copyOf(good, good.length / 2);
+            Files.write(current, cut);
+
+            manager = open(base, mode);
+            TestSupport.check(manager.queryByEquipmentId("A").isEmpty(),
+                    mode + ": se usaron reportes de un snapshot que no se pudo leer");
+            manager.addReports(batch("B", SAVED));
+            manager.close();
+            TestSupport.check(Arrays.equals(Files.readAllBytes(current), cut),
+                    mode + ": el snapshot que no se pudo leer se modifico o se borro");
+            TestSupport.check(pointer.equals(readPointer(data)), mode + ": se cambio el puntero con un snapshot sin leer");
+
+            Files.write(current, good);
+            manager = open(base, mode);
+            int a = manager.queryByEquipmentId("A").size();
+            int b = manager.queryByEquipmentId("B").size();
+            manager.close();
+            TestSupport.check(a == SAVED && b == SAVED,
+                    mode + ": al reponer el snapshot se esperaban " + SAVED + " + " + SAVED + " reportes y hay " + a + " + " + b);
+        } finally {
+            TestSupport.deleteTree(base);
+        }
+    }
+
+    private static String readPointer(Path data) throws Exception {
+        return new String(Files.readAllBytes(data.resolve(JournaledReportStore.CURRENT_FILE)), StandardCharsets.UTF_8).trim();
+    }
+
+    private static ReportManager open(Path base, ReportManager.StorageMode mode) {
+        return new ReportManager(base, mode, ReportManager.Durability.BATCHED);
+    }
+
+    private static List<Report> batch(String equipment, int count) {
+        List<Report> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new HardwareReport(equipment, "reporte " + i, Severity.LOW,
+                    LocalDate.of(2024, 1, 1).plusDays(i % 300), "Disco", 1 + i % 999, false));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,67 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import model.HardwareReport;
+import model.Report;
+import model.Severity;
+import model.SoftwareReport;
+
+/**
+ * Utilidades compartidas por las pruebas: verificaciones, carpetas temporales
+ * y reportes al azar con semilla fija.
+ */
+final class TestSupport {
+    private static final String[] COMPONENTS = {"Disco", "Pantalla", "Memoria"};
+    private static final String[] SYSTEMS = {"Linux", "Windows"};
+    private static final String[] PROGRAMS = {"Office", "Chrome", "Java"};
+
+    private TestSupport() {
+    }
+
+    /**
+     * @throws AssertionError con el mensaje si la condicion no se cumple
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static Path tempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    /**
+     * Borra la carpeta con todo lo que tiene. Si algo no se puede borrar, queda en la carpeta temporal.
+     */
+    static void deleteTree(Path folder) {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Error al borrar " + folder + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reporte al azar de un equipo EQ-0 a EQ-9, con fecha dentro de los dias indicados desde start.
+     * La descripcion lleva el numero, asi que cada reporte se puede reconocer por su texto.
+     */
+    static Report randomReport(Random random, int number, LocalDate start, int days) {
+        String equipment = "EQ-" + random.nextInt(10);
+        Severity severity = Severity.values()[random.nextInt(Severity.values().length)];
+        LocalDate date = start.plusDays(random.nextInt(days));
+        if (random.nextBoolean()) {
+            return new HardwareReport(equipment, "reporte " + number, severity, date,
+                    COMPONENTS[random.nextInt(COMPONENTS.length)], 1 + random.nextInt(999), random.nextBoolean());
+        }
+        return new SoftwareReport(equipment, "reporte " + number, severity, date,
+                SYSTEMS[random.nextInt(SYSTEMS.length)], PROGRAMS[random.nextInt(PROGRAMS.length)],
+                random.nextInt(4) + "." + random.nextInt(12) + "." + random.nextInt(3));
+    }
+}